@@ -48,4 +48,52 @@ delete from t_order_2 where status = 'test';
 use order_db_1;
 
 delete from t_order_1 where status = 'test';
-delete from t_order_2 where status = 'test';
\ No newline at end of file
+delete from t_order_2 where status = 'test';
+
+-- 游标分页：按 user_id 过滤、按 price 排序时使用的索引
+use order_db;
+
+alter table `t_order_1` add index `idx_user_order` (`user_id`, `order_id`), add index `idx_price_order` (`price`, `order_id`);
+alter table `t_order_2` add index `idx_user_order` (`user_id`, `order_id`), add index `idx_price_order` (`price`, `order_id`);
+
+use order_db_1;
+
+alter table `t_order_1` add index `idx_user_order` (`user_id`, `order_id`), add index `idx_price_order` (`price`, `order_id`);
+alter table `t_order_2` add index `idx_user_order` (`user_id`, `order_id`), add index `idx_price_order` (`price`, `order_id`);
+
+-- 订单全局二级索引：按 index_value 分片
+use order_db;
+
+create table `t_order_index_1` (
+                             `index_name` varchar(32) not null comment '索引名称，如 status',
+                             `index_value` varchar(128) not null comment '索引值',
+                             `order_id` bigint(20) not null comment '订单id',
+                             `data_node` varchar(64) not null comment '订单所在实际数据节点，如 ms1.t_order_2',
+                             primary key (`index_name`, `index_value`, `order_id`)
+)engine = InnoDB comment '订单全局二级索引';
+
+create table `t_order_index_2` (
+                             `index_name` varchar(32) not null comment '索引名称，如 status',
+                             `index_value` varchar(128) not null comment '索引值',
+                             `order_id` bigint(20) not null comment '订单id',
+                             `data_node` varchar(64) not null comment '订单所在实际数据节点，如 ms1.t_order_2',
+                             primary key (`index_name`, `index_value`, `order_id`)
+)engine = InnoDB comment '订单全局二级索引';
+
+use order_db_1;
+
+create table `t_order_index_1` (
+                             `index_name` varchar(32) not null comment '索引名称，如 status',
+                             `index_value` varchar(128) not null comment '索引值',
+                             `order_id` bigint(20) not null comment '订单id',
+                             `data_node` varchar(64) not null comment '订单所在实际数据节点，如 ms1.t_order_2',
+                             primary key (`index_name`, `index_value`, `order_id`)
+)engine = InnoDB comment '订单全局二级索引';
+
+create table `t_order_index_2` (
+                             `index_name` varchar(32) not null comment '索引名称，如 status',
+                             `index_value` varchar(128) not null comment '索引值',
+                             `order_id` bigint(20) not null comment '订单id',
+                             `data_node` varchar(64) not null comment '订单所在实际数据节点，如 ms1.t_order_2',
+                             primary key (`index_name`, `index_value`, `order_id`)
+)engine = InnoDB comment '订单全局二级索引';
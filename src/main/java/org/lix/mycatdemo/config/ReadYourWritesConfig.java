@@ -0,0 +1,25 @@
+package org.lix.mycatdemo.config;
+
+import org.lix.mycatdemo.sharding.consistency.SessionUserInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.Resource;
+
+/**
+ * 写后读一致性窗口开启时注册请求用户拦截器
+ */
+@Configuration
+@ConditionalOnProperty(name = "order.read-your-writes.enabled", havingValue = "true")
+public class ReadYourWritesConfig implements WebMvcConfigurer {
+
+    @Resource
+    private SessionUserInterceptor sessionUserInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sessionUserInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -1,6 +1,7 @@
 package org.lix.mycatdemo.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.nacos.event.ShardingConfigChangeEvent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
@@ -52,6 +53,15 @@ public class ShardingJdbcDynamicConfig {
         }
     }
 
+    /**
+     * 监听 Nacos 推送产生的键级别变更事件
+     */
+    @EventListener
+    public void onShardingConfigChange(ShardingConfigChangeEvent event) {
+        log.info("ShardingSphere 配置变更：类型={}，对象={}，{}，变化的配置键: {}",
+                event.getType(), event.getTarget(), event.isFullRebuild() ? "已重建数据源" : "增量生效", event.getChangedKeys());
+    }
+
     /**
      * 记录当前 ShardingSphere 配置状态
      */
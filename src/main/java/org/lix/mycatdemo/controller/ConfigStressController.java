@@ -0,0 +1,37 @@
+package org.lix.mycatdemo.controller;
+
+import org.lix.mycatdemo.nacos.memory.ConfigPushStressTester;
+import org.lix.mycatdemo.nacos.memory.StressPushMode;
+import org.lix.mycatdemo.web.RestResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 配置推送压测入口，仅 config-stress profile 下可用
+ */
+@RestController
+@Profile("config-stress")
+@RequestMapping("/api/config-stress")
+public class ConfigStressController {
+
+    @Resource
+    private ConfigPushStressTester configPushStressTester;
+
+    /**
+     * @param mode live 只改连接池大小，rebuild 改负载均衡参数触发重建
+     */
+    @GetMapping("/run")
+    public RestResponse<Map<String, Object>> run(@RequestParam(value = "pushes", defaultValue = "10000") int pushes,
+                                                 @RequestParam(value = "rate", defaultValue = "5000") int pushesPerSecond,
+                                                 @RequestParam(value = "drainMillis", defaultValue = "5000") long drainMillis,
+                                                 @RequestParam(value = "mode", defaultValue = "live") String mode) throws IOException {
+        return RestResponse.success(configPushStressTester.run(pushes, pushesPerSecond, drainMillis, StressPushMode.of(mode)));
+    }
+}
@@ -3,22 +3,46 @@ package org.lix.mycatdemo.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
 import org.lix.mycatdemo.mapper.OrderMapper;
+import org.lix.mycatdemo.service.OrderAggregationService;
+import org.lix.mycatdemo.service.OrderBatchService;
+import org.lix.mycatdemo.service.OrderExportService;
+import org.lix.mycatdemo.service.OrderQueryService;
+import org.lix.mycatdemo.service.dto.BatchCreateResult;
+import org.lix.mycatdemo.service.dto.ExportFormat;
+import org.lix.mycatdemo.service.dto.OrderAggregateResult;
+import org.lix.mycatdemo.service.dto.OrderPage;
+import org.lix.mycatdemo.service.dto.OrderSortKey;
+import org.lix.mycatdemo.service.cache.OrderBatchLoader;
+import org.lix.mycatdemo.service.cache.OrderNearCacheService;
+import org.lix.mycatdemo.service.index.OrderIndexColumn;
+import org.lix.mycatdemo.service.index.OrderIndexService;
+import org.lix.mycatdemo.service.writebehind.OrderWriteBehindService;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.lix.mycatdemo.sharding.loadbalance.HedgedReadExecutor;
+import org.lix.mycatdemo.sharding.loadbalance.ReplicaLatencyRegistry;
+import org.lix.mycatdemo.sharding.loadbalance.ReplicationLagMonitor;
+import org.lix.mycatdemo.sharding.pool.AdaptivePoolSizer;
+import org.lix.mycatdemo.sharding.resilience.AdaptiveConcurrencyLimiter;
+import org.lix.mycatdemo.sharding.resilience.ShardGuardFactory;
 import org.lix.mycatdemo.web.RestResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -33,6 +57,57 @@ public class OrderController {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private OrderQueryService orderQueryService;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private OrderIndexService orderIndexService;
+
+    @Autowired
+    private OrderAggregationService orderAggregationService;
+
+    @Autowired
+    private OrderNearCacheService orderNearCacheService;
+
+    @Autowired
+    private OrderBatchLoader orderBatchLoader;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private HedgedReadExecutor hedgedReadExecutor;
+
+    @Autowired
+    private ShardGuardFactory shardGuardFactory;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+
+    /**
+     * order.replica.lag-probe.enabled=false 时不存在
+     */
+    @Autowired(required = false)
+    private ReplicationLagMonitor replicationLagMonitor;
+
+    /**
+     * order.pool-sizer.enabled=true 时才存在
+     */
+    @Autowired(required = false)
+    private AdaptivePoolSizer adaptivePoolSizer;
+
+    /**
+     * order.write-behind.enabled=true 时才存在
+     */
+    @Autowired(required = false)
+    private OrderWriteBehindService orderWriteBehindService;
+
     @GetMapping("/test")
     public RestResponse<Integer> test(@RequestParam("count") int batchSize) {
         Integer count = 0;
@@ -42,12 +117,180 @@ public class OrderController {
             orderDO.setPrice(new BigDecimal("3.14"));
             orderDO.setUserId((long) i);
             orderDO.setStatus("init");
-            count += orderMapper.add(orderDO);
-
+            orderNearCacheService.add(orderDO);
+            count++;
         }
         return RestResponse.success(count);
     }
 
+    /**
+     * 批量创建订单：按分片分组后并行批量写入
+     */
+    @PostMapping("/batch")
+    public RestResponse<BatchCreateResult> batchCreate(@RequestBody List<OrderDO> orders) {
+        return RestResponse.success(orderBatchService.createOrders(orders));
+    }
+
+    /**
+     * 与 /test 相同的测试数据，走批量写入
+     */
+    @GetMapping("/test/batch")
+    public RestResponse<BatchCreateResult> testBatch(@RequestParam("count") int batchSize) {
+        List<OrderDO> orders = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            OrderDO orderDO = new OrderDO();
+            orderDO.setPrice(new BigDecimal("3.14"));
+            orderDO.setUserId((long) i);
+            orderDO.setStatus("init");
+            orders.add(orderDO);
+        }
+        return RestResponse.success(orderBatchService.createOrders(orders));
+    }
+
+    /**
+     * write-behind 创建订单：写入本地预写日志后立即返回订单号，异步落库
+     */
+    @PostMapping("/async")
+    public RestResponse<Long> asyncCreate(@RequestBody OrderDO order) {
+        return RestResponse.success(getWriteBehindService().accept(order));
+    }
+
+    @GetMapping("/async/statistics")
+    public RestResponse<Map<String, Object>> asyncStatistics() {
+        return RestResponse.success(getWriteBehindService().getStatistics());
+    }
+
+    /**
+     * 游标分页查询订单：第一页不传 token，之后传上一页返回的 nextToken
+     */
+    @GetMapping("/list")
+    public RestResponse<OrderPage> list(@RequestParam(value = "userId", required = false) Long userId,
+                                        @RequestParam(value = "sort", defaultValue = "order_id") String sort,
+                                        @RequestParam(value = "size", defaultValue = "20") int size,
+                                        @RequestParam(value = "token", required = false) String token) {
+        return RestResponse.success(orderQueryService.listOrders(userId, OrderSortKey.of(sort), size, token));
+    }
+
+    /**
+     * 流式导出订单，逐行写入响应，不经过 RestResponse
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(value = "userId", required = false) Long userId,
+                       @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws SQLException, IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=orders." + exportFormat.getExtension());
+        orderExportService.export(userId, exportFormat, response.getOutputStream());
+    }
+
+    /**
+     * 按状态统计订单数和金额：聚合下推到每个实际表，部分分片超时时返回不完整结果
+     */
+    @GetMapping("/aggregate/status")
+    public RestResponse<OrderAggregateResult> aggregateByStatus(@RequestParam(value = "userId", required = false) Long userId) {
+        return RestResponse.success(orderAggregationService.aggregateByStatus(userId));
+    }
+
+    /**
+     * 按非分片键查询：先查全局二级索引，再按 order_id 精确查询
+     */
+    @GetMapping("/index")
+    public RestResponse<List<OrderDO>> selectByIndex(@RequestParam("column") String column,
+                                                     @RequestParam("value") String value,
+                                                     @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return RestResponse.success(orderIndexService.lookup(OrderIndexColumn.of(column), value, limit));
+    }
+
+    /**
+     * 按 order_id 查询，开启近端缓存时优先读缓存
+     */
+    @GetMapping("/get")
+    public RestResponse<OrderDO> get(@RequestParam("orderId") long orderId) {
+        return RestResponse.success(orderNearCacheService.getById(orderId));
+    }
+
+    /**
+     * 修改订单状态，同时失效近端缓存并更新二级索引
+     */
+    @PostMapping("/status")
+    public RestResponse<Boolean> updateStatus(@RequestParam("orderId") long orderId,
+                                              @RequestParam("status") String status) {
+        return RestResponse.success(orderNearCacheService.updateStatus(orderId, status));
+    }
+
+    @GetMapping("/cache/statistics")
+    public RestResponse<Map<String, Object>> cacheStatistics() {
+        return RestResponse.success(orderNearCacheService.getStatistics());
+    }
+
+    @GetMapping("/loader/statistics")
+    public RestResponse<Map<String, Object>> loaderStatistics() {
+        return RestResponse.success(orderBatchLoader.getStatistics());
+    }
+
+    @GetMapping("/consistency/statistics")
+    public RestResponse<Map<String, Object>> consistencyStatistics() {
+        return RestResponse.success(readYourWritesTracker.getStatistics());
+    }
+
+    /**
+     * 各从库最近一次探测到的复制延迟
+     */
+    @GetMapping("/replica/lag")
+    public RestResponse<Map<String, Object>> replicaLag() {
+        if (replicationLagMonitor == null) {
+            throw new BusinessException("未开启复制延迟探测，请配置 order.replica.lag-probe.enabled=true");
+        }
+        return RestResponse.success(replicationLagMonitor.getStatistics());
+    }
+
+    /**
+     * 各从库的查询耗时 EWMA 和进行中的查询数
+     */
+    @GetMapping("/replica/latency")
+    public RestResponse<Map<String, Object>> replicaLatency() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        ReplicaLatencyRegistry.snapshot().forEach((name, stats) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("ewmaMillis", stats.getEwmaNanos() / 1_000_000);
+            item.put("inFlight", stats.getInFlight());
+            item.put("sampleCount", stats.getSampleCount());
+            statistics.put(name, item);
+        });
+        return RestResponse.success(statistics);
+    }
+
+    @GetMapping("/replica/hedge")
+    public RestResponse<Map<String, Object>> hedgeStatistics() {
+        return RestResponse.success(hedgedReadExecutor.getStatistics());
+    }
+
+    /**
+     * 各实际数据源的熔断器状态和隔离舱占用
+     */
+    @GetMapping("/shard/guard")
+    public RestResponse<Map<String, Object>> shardGuard() {
+        return RestResponse.success(shardGuardFactory.getStatistics());
+    }
+
+    @GetMapping("/limiter/statistics")
+    public RestResponse<Map<String, Object>> limiterStatistics() {
+        return RestResponse.success(adaptiveConcurrencyLimiter.getStatistics());
+    }
+
+    /**
+     * 各连接池当前大小、实例预算占用和最近的调整记录
+     */
+    @GetMapping("/pool/sizer")
+    public RestResponse<Map<String, Object>> poolSizer() {
+        if (adaptivePoolSizer == null) {
+            throw new BusinessException("未开启连接池在线调整，请配置 order.pool-sizer.enabled=true");
+        }
+        return RestResponse.success(adaptivePoolSizer.getStatistics());
+    }
+
     @GetMapping("/select")
     public RestResponse<List<OrderDO>> select(@RequestParam("userId") String userId) {
         List<Long> orderDOs = Arrays.stream(userId.split(",")).map(String::trim).map(Long::parseLong).collect(Collectors.toList());
@@ -88,4 +331,11 @@ public class OrderController {
         }
         return RestResponse.success(null);
     }
+
+    private OrderWriteBehindService getWriteBehindService() {
+        if (orderWriteBehindService == null) {
+            throw new BusinessException("未开启订单 write-behind，请配置 order.write-behind.enabled=true");
+        }
+        return orderWriteBehindService;
+    }
 }
@@ -55,6 +55,12 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(Exception.class)
     public RestResponse<String> handleException(Exception e) {
+        // MyBatis 会把拦截器抛出的业务异常包装成 PersistenceException
+        for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof BusinessException) {
+                return handleBusinessException((BusinessException) cause);
+            }
+        }
         String requestId = getRequestId();
         HttpServletRequest request = getRequest();
         
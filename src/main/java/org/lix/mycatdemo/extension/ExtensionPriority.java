@@ -0,0 +1,14 @@
+package org.lix.mycatdemo.extension;
+
+import java.lang.annotation.*;
+
+/**
+ * 扩展类优先级，值越小越靠前；未标注的扩展类排在最后，按 SPI 文件中的声明顺序
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ExtensionPriority {
+
+    int value();
+}
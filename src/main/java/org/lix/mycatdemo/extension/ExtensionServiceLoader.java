@@ -1,17 +1,37 @@
 package org.lix.mycatdemo.extension;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.ServiceLoader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * XXX 扩展类加载器
+ * 1. 每个接口只读取一次 META-INF/services 索引，没有扩展类的结果同样缓存，之后的查找不再访问 classpath
+ * 2. 扩展类在第一次查找该接口时才实例化，按 {@link ExtensionPriority} 排序
+ * 3. 同一个扩展类全局单例，实现多个扩展接口时共享同一个实例
+ */
+@Slf4j
 public class ExtensionServiceLoader {
 
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+
+    /**
+     * 接口 → 排好序的扩展实例（不可变），空列表表示没有扩展类
+     */
     private static final Map<Class<?>, List<?>> EXTENSION_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * 扩展类 → 单例
+     */
+    private static final Map<Class<?>, Object> INSTANCE_MAP = new ConcurrentHashMap<>();
+
     private ExtensionServiceLoader() { }
 
     /**
@@ -22,14 +42,11 @@ public class ExtensionServiceLoader {
      */
     @SuppressWarnings("unchecked")
     public static <T> List<T> get(Class<T> clazz) {
-        List<T> services = (List<T>) EXTENSION_MAP.get(clazz);
-        if (CollectionUtils.isEmpty(services)) {
-            services = load(clazz);
-            if (CollectionUtils.isNotEmpty(services)) {
-                EXTENSION_MAP.put(clazz, services);
-            }
+        List<?> services = EXTENSION_MAP.get(clazz);
+        if (services == null) {
+            services = EXTENSION_MAP.computeIfAbsent(clazz, ExtensionServiceLoader::load);
         }
-        return services;
+        return (List<T>) services;
     }
 
     /**
@@ -44,17 +61,90 @@ public class ExtensionServiceLoader {
     }
 
     /**
-     * XXX 基于SPI机制加载扩展类
+     * XXX 基于SPI索引文件加载扩展类：只解析类名，不触发类初始化，排序后再实例化
      * @param clazz
      * @return
      * @param <T>
      */
     private static <T> List<T> load(Class<T> clazz) {
-        ServiceLoader<T> loader = ServiceLoader.load(clazz);
-        List<T> services = new ArrayList<>();
-        for (T service : loader) {
-            services.add(service);
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ExtensionServiceLoader.class.getClassLoader();
+        }
+
+        List<Class<? extends T>> providers = new ArrayList<>();
+        for (String className : readProviderNames(clazz, classLoader)) {
+            try {
+                Class<?> provider = Class.forName(className, false, classLoader);
+                if (!clazz.isAssignableFrom(provider)) {
+                    log.warn("扩展类 {} 没有实现 {}，已忽略", className, clazz.getName());
+                    continue;
+                }
+                providers.add(provider.asSubclass(clazz));
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.warn("加载扩展类 {} 失败，已忽略", className, e);
+            }
+        }
+        if (providers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 稳定排序，同优先级保持声明顺序
+        providers.sort(Comparator.comparingInt(ExtensionServiceLoader::priorityOf));
+
+        List<T> services = new ArrayList<>(providers.size());
+        for (Class<? extends T> provider : providers) {
+            T instance = getInstance(provider);
+            if (instance != null) {
+                services.add(instance);
+            }
         }
-        return services;
+        return Collections.unmodifiableList(services);
+    }
+
+    /**
+     * 读取所有 META-INF/services/接口全名 文件，去重并保持声明顺序
+     */
+    private static Set<String> readProviderNames(Class<?> clazz, ClassLoader classLoader) {
+        Set<String> names = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SERVICES_PREFIX + clazz.getName());
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int comment = line.indexOf('#');
+                        String name = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                        if (!name.isEmpty()) {
+                            names.add(name);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取扩展索引失败: {}", clazz.getName(), e);
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getInstance(Class<? extends T> provider) {
+        Object instance = INSTANCE_MAP.get(provider);
+        if (instance != null) {
+            return (T) instance;
+        }
+        try {
+            instance = provider.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("实例化扩展类 {} 失败，已忽略", provider.getName(), e);
+            return null;
+        }
+        Object existing = INSTANCE_MAP.putIfAbsent(provider, instance);
+        return (T) (existing != null ? existing : instance);
+    }
+
+    private static int priorityOf(Class<?> provider) {
+        ExtensionPriority priority = provider.getAnnotation(ExtensionPriority.class);
+        return priority == null ? Integer.MAX_VALUE : priority.value();
     }
 }
@@ -1,17 +1,38 @@
 package org.lix.mycatdemo.mapper;
 
 import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.sharding.hint.ShardHint;
 import tk.mybatis.mapper.common.Mapper;
 import tk.mybatis.mapper.common.MySqlMapper;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderMapper extends Mapper<OrderDO>, MySqlMapper<OrderDO> {
 
     @Insert("insert into t_order(price, user_id, status) values (#{order.price}, #{order.userId}, #{order.status})")
+    @Options(useGeneratedKeys = true, keyProperty = "order.orderId", keyColumn = "order_id")
     Integer add(@Param("order") OrderDO order);
 
+    @Update("update t_order set status = #{status} where order_id = #{orderId}")
+    Integer updateStatus(@Param("orderId") Long orderId, @Param("status") String status);
+
     List<OrderDO> selectByUserId(@Param("userId") List<Long> userId);
+
+    /**
+     * 按 order_id 精确查询，分片基因保证只访问 order_id 所在的实际表
+     * 查询 hint 逻辑表 t_order_by_gene，orderIds 直接作为分库/分表路由值，不再从 IN 条件中提取
+     */
+    @ShardHint(logicTable = "t_order_by_gene", database = "orderIds", table = "orderIds")
+    List<OrderDO> selectByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 与 selectByOrderIds 相同，但强制读主库，用于写之前读取最新数据
+     */
+    @ShardHint(logicTable = "t_order_by_gene", database = "orderIds", table = "orderIds", masterOnly = true)
+    List<OrderDO> selectByOrderIdsFromMaster(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -0,0 +1,34 @@
+package org.lix.mycatdemo.nacos.config;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.lix.mycatdemo.parser.ConfigFileTypeEnum;
+
+/**
+ * 一条配置的定位信息：命名空间名 + dataId + group
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ConfigKey {
+
+    /**
+     * 命名空间名，空字符串表示默认命名空间
+     */
+    private final String namespace;
+
+    private final String dataId;
+
+    private final String group;
+
+    /**
+     * 根据 dataId 后缀推断配置文件类型，如 sharding-JDBC.yaml → yaml
+     */
+    public ConfigFileTypeEnum getFileType() {
+        int index = dataId.lastIndexOf('.');
+        return ConfigFileTypeEnum.of(index < 0 ? null : dataId.substring(index + 1));
+    }
+}
@@ -0,0 +1,19 @@
+package org.lix.mycatdemo.nacos.config;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.exception.NacosException;
+
+/**
+ * 按命名空间创建 ConfigService
+ * 默认连接 Nacos，压测时可切换为进程内实现
+ */
+public interface ConfigServiceFactory {
+
+    /**
+     * 创建指定命名空间的 ConfigService
+     * @param namespaceId 命名空间Id
+     * @return ConfigService
+     * @throws NacosException 创建失败
+     */
+    ConfigService create(String namespaceId) throws NacosException;
+}
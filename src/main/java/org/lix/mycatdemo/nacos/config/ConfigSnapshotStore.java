@@ -0,0 +1,180 @@
+package org.lix.mycatdemo.nacos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 配置本地快照：每次成功拉取或收到推送的配置都追加写入本地文件
+ * 配置中心不可用或较慢时，启动阶段可以直接使用快照
+ *
+ * 文件格式（追加写，每条记录）：
+ * | magic(int) | 时间戳(long) | 内容长度(int) | CRC32(long) | 内容(UTF-8) |
+ * 读取时取最后一条校验通过的记录，写入中断导致的残缺尾部会被忽略
+ */
+@Slf4j
+@Component
+public class ConfigSnapshotStore {
+
+    private static final int RECORD_MAGIC = 0x4E43534E;
+
+    @Value("${config.snapshot.dir:${user.home}/.sharding-jdbc-demo/config-snapshot}")
+    private String snapshotDir;
+
+    /**
+     * 单个快照文件超过该大小时压缩为只保留最新记录
+     */
+    @Value("${config.snapshot.compact-bytes:1048576}")
+    private long compactBytes;
+
+    /**
+     * 最近一次写入的内容，内容未变化时不重复追加
+     */
+    private final Map<ConfigKey, String> lastWritten = new ConcurrentHashMap<>();
+
+    /**
+     * 同一个文件的写入串行化
+     */
+    private final Map<ConfigKey, Object> fileLocks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(Paths.get(snapshotDir));
+            log.info("配置快照目录: {}", snapshotDir);
+        } catch (IOException e) {
+            log.warn("创建配置快照目录失败: {}", snapshotDir, e);
+        }
+    }
+
+    /**
+     * 追加写入一份配置快照
+     * @param key 配置定位信息
+     * @param content 配置内容
+     */
+    public void save(ConfigKey key, String content) {
+        if (content == null || content.equals(lastWritten.get(key))) {
+            return;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+
+        synchronized (fileLocks.computeIfAbsent(key, k -> new Object())) {
+            Path path = pathOf(key);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile(), true)))) {
+                out.writeInt(RECORD_MAGIC);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(bytes.length);
+                out.writeLong(crc32.getValue());
+                out.write(bytes);
+            } catch (IOException e) {
+                log.warn("写入配置快照失败, key: {}", key, e);
+                return;
+            }
+            lastWritten.put(key, content);
+            compactIfNecessary(path, bytes, crc32.getValue());
+        }
+    }
+
+    /**
+     * 最近写入的内容仍是 expected 时才写入 content，用于丢弃比已收到的推送更旧的拉取结果
+     * @return 是否写入
+     */
+    public boolean compareAndSave(ConfigKey key, String expected, String content) {
+        synchronized (fileLocks.computeIfAbsent(key, k -> new Object())) {
+            if (!Objects.equals(lastWritten.get(key), expected)) {
+                return false;
+            }
+            save(key, content);
+            return true;
+        }
+    }
+
+    /**
+     * 读取最新的一份有效快照
+     * @param key 配置定位信息
+     * @return 配置内容，没有有效快照时返回 null
+     */
+    public String load(ConfigKey key) {
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        String latest = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long fileSize = Files.size(path);
+            while (true) {
+                if (in.readInt() != RECORD_MAGIC) {
+                    log.warn("配置快照记录损坏，停止读取, key: {}", key);
+                    break;
+                }
+                in.readLong();
+                int length = in.readInt();
+                long checksum = in.readLong();
+                if (length < 0 || length > fileSize) {
+                    log.warn("配置快照记录长度非法，停止读取, key: {}", key);
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                CRC32 crc32 = new CRC32();
+                crc32.update(bytes, 0, bytes.length);
+                if (crc32.getValue() != checksum) {
+                    log.warn("配置快照校验失败，忽略该记录, key: {}", key);
+                    continue;
+                }
+                latest = new String(bytes, StandardCharsets.UTF_8);
+            }
+        } catch (EOFException e) {
+            // 读到文件末尾或残缺的尾部记录
+        } catch (IOException e) {
+            log.warn("读取配置快照失败, key: {}", key, e);
+        }
+        if (latest != null) {
+            lastWritten.putIfAbsent(key, latest);
+        }
+        return latest;
+    }
+
+    /**
+     * 文件过大时只保留最新记录：先写临时文件再原子替换
+     */
+    private void compactIfNecessary(Path path, byte[] latest, long checksum) {
+        try {
+            if (Files.size(path) <= compactBytes) {
+                return;
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(RECORD_MAGIC);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(latest.length);
+                out.writeLong(checksum);
+                out.write(latest);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("配置快照已压缩: {}", path);
+        } catch (IOException e) {
+            log.warn("压缩配置快照失败: {}", path, e);
+        }
+    }
+
+    private Path pathOf(ConfigKey key) {
+        String fileName = String.join("+", key.getNamespace(), key.getGroup(), key.getDataId())
+                .replaceAll("[^A-Za-z0-9._+\\-]", "_");
+        return Paths.get(snapshotDir, fileName + ".snapshot");
+    }
+}
@@ -1,22 +1,20 @@
 package org.lix.mycatdemo.nacos.config;
 
-import com.alibaba.nacos.api.NacosFactory;
 import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.AbstractListener;
 import com.alibaba.nacos.api.config.listener.Listener;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.lix.mycatdemo.parser.ConfigFileTypeEnum;
-import org.lix.mycatdemo.parser.ConfigParserHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * 动态管理注册中心
@@ -27,9 +25,6 @@ public class DynamicConfigManager {
 
     private DynamicConfigManager() {}
 
-    @Value("${spring.cloud.nacos.config.server-addr}")
-    private String serverAddr;
-
     @Value("${spring.cloud.nacos.config.timeout}")
     private Long timeout;
 
@@ -39,15 +34,51 @@ public class DynamicConfigManager {
     @Value("${namespace.group}")
     private String group;
 
+    /**
+     * 批量拉取配置的并发度
+     */
+    @Value("${namespace.loader.threads:8}")
+    private int loaderThreads;
+
+    /**
+     * 启动时与命名空间映射共享同一个截止时间、批量拉取并解析的配置，格式 命名空间名:dataId:group，多个用逗号分隔
+     */
+    @Value("${namespace.preload:}")
+    private String preloadConfig;
+
+    /**
+     * 按 profile 选择 Nacos 或进程内的 ConfigService 实现
+     */
+    @Resource
+    private ConfigServiceFactory configServiceFactory;
+
+    /**
+     * 配置本地快照
+     */
+    @Resource
+    private ConfigSnapshotStore configSnapshotStore;
+
     /**
      * namespace to configService
+     * XXX 每个命名空间一个 future，创建慢的命名空间不会阻塞其他命名空间
      */
-    private Map<String, ConfigService> configServiceMap = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ConfigService>> configServiceMap = new ConcurrentHashMap<>();
 
     /**
      * namespece名称对应Id
+     * XXX 不可变快照，命名空间映射配置变化时整体替换，监听器线程读取无需加锁
      */
-    private Map<String, String> namespaceMap = new HashMap<>();
+    private volatile Map<String, String> namespaceMap = Collections.emptyMap();
+
+    /**
+     * 批量拉取、解析配置的线程池
+     */
+    private ExecutorService configLoaderExecutor;
+
+    /**
+     * 启动阶段预加载的配置：拉取和解析在加载线程池中进行，getConfigPreferSnapshot 取走后移除
+     */
+    private final Map<ConfigKey, CompletableFuture<LoadedConfig>> preloads = new ConcurrentHashMap<>();
 
 
     /**
@@ -55,48 +86,285 @@ public class DynamicConfigManager {
      */
     @PostConstruct
     public void init(){
-        ConfigService configService = getConfigService("");
+        configLoaderExecutor = new ThreadPoolExecutor(
+                loaderThreads, loaderThreads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "dynamic-config-loader");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        // 启动阶段的配置共享同一个截止时间
+        long deadline = System.currentTimeMillis() + timeout;
+
+        // 优先使用本地快照，远端配置在后台拉取，有差异时再按正常流程刷新
+        ConfigKey namespaceKey = new ConfigKey("", namespaceConfig, group);
+        String config = getConfigPreferSnapshot(namespaceKey, loaded -> refreshNamespaceMap(loaded.getProperties()), deadline);
+        if (config == null) {
+            // TODO 异常处理
+            throw new RuntimeException("获取命名空间映射配置失败, dataId: " + namespaceConfig);
+        }
+
+        // 命名空间映射就绪后，其余启动配置一起提交拉取和解析，使用方取用时通常已经完成
+        for (ConfigKey key : parsePreloadKeys()) {
+            preloads.put(key, loadAsync(key, deadline, true));
+        }
+        if (!preloads.isEmpty()) {
+            log.info("预加载启动配置: {}", preloads.keySet());
+        }
+
+        // 命名空间映射配置变化时整体替换
         try {
-            String config = configService.getConfig(namespaceConfig, group, timeout);
+            getConfigService("").addListener(namespaceConfig, group, new AbstractListener() {
+                @Override
+                public void receiveConfigInfo(String configInfo) {
+                    saveSnapshot(namespaceKey, configInfo);
+                    refreshNamespaceMap(LoadedConfig.parse(namespaceKey, configInfo).getProperties());
+                }
+            });
+        } catch (NacosException e) {
+            log.warn("命名空间映射配置监听器注册失败, dataId: {}", namespaceConfig, e);
+        }
+    }
 
-            Map<String, Object> properties = ConfigParserHandler.getInstance().parseConfig(config, ConfigFileTypeEnum.of("properties"));
-            for (Map.Entry<String, Object> entry : properties.entrySet()) {
-                namespaceMap.put(entry.getKey(), entry.getValue().toString());
+    private List<ConfigKey> parsePreloadKeys() {
+        List<ConfigKey> keys = new ArrayList<>();
+        if (StringUtils.isBlank(preloadConfig)) {
+            return keys;
+        }
+        for (String item : preloadConfig.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("namespace.preload 格式错误: " + item);
             }
-        } catch (NacosException e) {
-            // TODO 异常处理
-            throw new RuntimeException(e);
+            keys.add(new ConfigKey(parts[0].trim(), parts[1].trim(), parts[2].trim()));
         }
+        return keys;
     }
 
-    public ConfigService getConfigService(String namespaceId) {
-        if (configServiceMap.containsKey(namespaceId)) {
-            return configServiceMap.get(namespaceId);
+    /**
+     * 基于命名空间映射配置刷新 namespaceMap
+     * @param properties 解析后的命名空间映射配置
+     */
+    private void refreshNamespaceMap(Map<String, Object> properties) {
+        Map<String, String> newNamespaceMap = new HashMap<>(properties.size() * 2);
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            newNamespaceMap.put(entry.getKey(), entry.getValue().toString());
+        }
+        namespaceMap = Collections.unmodifiableMap(newNamespaceMap);
+        log.info("命名空间映射已刷新: {}", newNamespaceMap);
+    }
+
+    /**
+     * 优先使用本地快照，同时在后台拉取远端配置
+     * 1. 有快照时先用快照回调 applier，远端配置在加载线程池中拉取并解析，较快返回的远端配置不会被较旧的快照覆盖
+     * 2. 远端配置与快照不一致、且期间没有收到更新的推送时，写入快照并再次回调 applier，走正常的刷新流程
+     * 3. 没有快照时等待远端配置并回调 applier
+     * 启动时预加载过的配置直接使用预加载的结果，不再单独拉取
+     * @param key 配置定位信息
+     * @param applier 应用配置内容和解析结果
+     * @return 最先应用的配置内容，快照和远端都不可用时返回 null
+     */
+    public String getConfigPreferSnapshot(ConfigKey key, Consumer<LoadedConfig> applier) {
+        return getConfigPreferSnapshot(key, applier, System.currentTimeMillis() + timeout);
+    }
+
+    private String getConfigPreferSnapshot(ConfigKey key, Consumer<LoadedConfig> applier, long deadline) {
+        // 预加载失败（如超过启动截止时间）时重新拉取
+        CompletableFuture<LoadedConfig> preloaded = preloads.remove(key);
+        CompletableFuture<LoadedConfig> remoteFuture = preloaded != null && !preloaded.isCompletedExceptionally()
+                ? preloaded : loadAsync(key, deadline, true);
+
+        LoadedConfig snapshot = loadSnapshot(key);
+        if (snapshot == null) {
+            LoadedConfig remote = await(key, remoteFuture, deadline);
+            if (remote == null) {
+                return null;
+            }
+            configSnapshotStore.save(key, remote.getContent());
+            applier.accept(remote);
+            return remote.getContent();
         }
 
-        synchronized (this) {
-            if (configServiceMap.containsKey(namespaceId)) {
-                return configServiceMap.get(namespaceId);
+        log.info("使用本地配置快照启动, key: {}", key);
+        applier.accept(snapshot);
+        remoteFuture.whenCompleteAsync((remote, e) -> {
+            if (e != null) {
+                log.warn("后台拉取远端配置失败，继续使用本地快照, key: {}", key, e);
+                return;
+            }
+            if (remote == null || remote.getContent().equals(snapshot.getContent())) {
+                return;
+            }
+            if (configSnapshotStore.compareAndSave(key, snapshot.getContent(), remote.getContent())) {
+                log.info("远端配置与本地快照不一致，按正常流程刷新, key: {}", key);
+                applier.accept(remote);
+            } else {
+                log.info("拉取期间已收到更新的配置，忽略本次拉取结果, key: {}", key);
             }
+        }, configLoaderExecutor);
+        return snapshot.getContent();
+    }
+
+    /**
+     * 读取并解析本地快照，快照无法解析时按没有快照处理
+     */
+    private LoadedConfig loadSnapshot(ConfigKey key) {
+        String content = configSnapshotStore.load(key);
+        if (content == null) {
+            return null;
+        }
+        try {
+            return LoadedConfig.parse(key, content);
+        } catch (RuntimeException e) {
+            log.warn("本地配置快照解析失败，改为拉取远端配置, key: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 记录一份收到的配置（如监听器推送的配置）到本地快照
+     * @param key 配置定位信息
+     * @param content 配置内容
+     */
+    public void saveSnapshot(ConfigKey key, String content) {
+        configSnapshotStore.save(key, content);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (configLoaderExecutor != null) {
+            configLoaderExecutor.shutdownNow();
+        }
+    }
 
-            // 3. 创建配置
-            Properties properties = new Properties();
-            properties.put("serverAddr", serverAddr);
-            properties.put("namespace", namespaceId);
+    /**
+     * 并发拉取多个配置，所有配置共享同一个截止时间
+     * 超时、失败或不存在的配置不会出现在结果中
+     * @param keys 配置定位信息
+     * @param deadlineMs 整体超时时间（毫秒）
+     * @return 配置定位信息 → 配置内容
+     */
+    public Map<ConfigKey, String> getConfigs(Collection<ConfigKey> keys, long deadlineMs) {
+        Map<ConfigKey, String> result = new LinkedHashMap<>();
+        load(keys, deadlineMs, false).forEach((key, loaded) -> result.put(key, loaded.getContent()));
+        return result;
+    }
+
+    /**
+     * 并发拉取多个配置，并在加载线程中通过 ConfigParserHandler 按 dataId 后缀解析，所有配置共享同一个截止时间
+     * 超时、失败、解析失败或不存在的配置不会出现在结果中
+     * @param keys 配置定位信息
+     * @param deadlineMs 整体超时时间（毫秒）
+     * @return 配置定位信息 → 配置内容和解析结果
+     */
+    public Map<ConfigKey, LoadedConfig> getAndParseConfigs(Collection<ConfigKey> keys, long deadlineMs) {
+        return load(keys, deadlineMs, true);
+    }
+
+    private Map<ConfigKey, LoadedConfig> load(Collection<ConfigKey> keys, long deadlineMs, boolean parse) {
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        Map<ConfigKey, CompletableFuture<LoadedConfig>> futures = new LinkedHashMap<>();
+        for (ConfigKey key : keys) {
+            futures.put(key, loadAsync(key, deadline, parse));
+        }
+        Map<ConfigKey, LoadedConfig> result = new LinkedHashMap<>();
+        for (Map.Entry<ConfigKey, CompletableFuture<LoadedConfig>> entry : futures.entrySet()) {
+            LoadedConfig loaded = await(entry.getKey(), entry.getValue(), deadline);
+            if (loaded != null) {
+                configSnapshotStore.save(entry.getKey(), loaded.getContent());
+                result.put(entry.getKey(), loaded);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                futures.values().forEach(future -> future.cancel(true));
+                break;
+            }
+        }
+        return result;
+    }
 
+    /**
+     * 在加载线程池中拉取一份配置，parse 为 true 时同时解析；配置不存在时结果为 null
+     */
+    private CompletableFuture<LoadedConfig> loadAsync(ConfigKey key, long deadline, boolean parse) {
+        return CompletableFuture.supplyAsync(() -> {
             try {
-                ConfigService configService = NacosFactory.createConfigService(properties);
-                if(Objects.isNull(configService)){
-                    log.error("NacosConfigService创建失败, namespace: {}", namespaceId);
-                    throw new RuntimeException("创建Nacos配置服务失败");
+                String content = fetchConfig(key, deadline);
+                if (content == null) {
+                    return null;
+                }
+                return parse ? LoadedConfig.parse(key, content) : new LoadedConfig(content, null);
+            } catch (NacosException | TimeoutException e) {
+                throw new CompletionException(e);
+            }
+        }, configLoaderExecutor);
+    }
+
+    /**
+     * 等待到截止时间，超时、失败时返回 null
+     */
+    private LoadedConfig await(ConfigKey key, CompletableFuture<LoadedConfig> future, long deadline) {
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        try {
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("拉取配置超时, key: {}", key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("拉取配置失败, key: {}", key, e.getCause());
+        }
+        return null;
+    }
+
+    private String fetchConfig(ConfigKey key, long deadline) throws NacosException, TimeoutException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new TimeoutException("拉取配置超时, key: " + key);
+        }
+        ConfigService configService = getConfigService(getNamespaceId(key.getNamespace()));
+        return configService.getConfig(key.getDataId(), key.getGroup(), remaining);
+    }
+
+    public ConfigService getConfigService(String namespaceId) {
+        CompletableFuture<ConfigService> future = configServiceMap.get(namespaceId);
+        if (future == null) {
+            // 只有放入 future 的线程负责创建，其他线程等待同一个 future
+            CompletableFuture<ConfigService> created = new CompletableFuture<>();
+            future = configServiceMap.computeIfAbsent(namespaceId, k -> created);
+            if (future == created) {
+                try {
+                    created.complete(createConfigService(namespaceId));
+                } catch (RuntimeException e) {
+                    // 创建失败时移除，下次调用重新创建
+                    configServiceMap.remove(namespaceId, created);
+                    created.completeExceptionally(e);
                 }
-                configServiceMap.put(namespaceId, configService);
-                return configService;
-            } catch (NacosException e) {
-                log.error("NacosConfigService创建失败, namespace: {}", namespaceId, e);
-                throw new RuntimeException("创建Nacos配置服务失败", e);
             }
         }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private ConfigService createConfigService(String namespaceId) {
+        try {
+            ConfigService configService = configServiceFactory.create(namespaceId);
+            if(Objects.isNull(configService)){
+                log.error("NacosConfigService创建失败, namespace: {}", namespaceId);
+                throw new RuntimeException("创建Nacos配置服务失败");
+            }
+            return configService;
+        } catch (NacosException e) {
+            log.error("NacosConfigService创建失败, namespace: {}", namespaceId, e);
+            throw new RuntimeException("创建Nacos配置服务失败", e);
+        }
     }
 
     /**
@@ -143,10 +411,8 @@ public class DynamicConfigManager {
         if(StringUtils.isBlank(namespace)){
             return "";
         }
-        if(namespaceMap.containsKey(namespace)){
-            return namespaceMap.get(namespace);
-        }
-        return "";
+        String namespaceId = namespaceMap.get(namespace);
+        return namespaceId == null ? "" : namespaceId;
     }
 
     /**
@@ -0,0 +1,31 @@
+package org.lix.mycatdemo.nacos.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.lix.mycatdemo.parser.ConfigParserHandler;
+
+import java.util.Map;
+
+/**
+ * 一份配置的原始内容，以及按 dataId 后缀解析出的扁平化键值对
+ */
+@Getter
+@AllArgsConstructor
+public class LoadedConfig {
+
+    /**
+     * 原始内容，写入快照、与快照对比时使用
+     */
+    private final String content;
+
+    private final Map<String, Object> properties;
+
+    /**
+     * 通过 ConfigParserHandler 解析配置内容
+     * @param key 配置定位信息，决定文件类型
+     * @param content 配置内容
+     */
+    public static LoadedConfig parse(ConfigKey key, String content) {
+        return new LoadedConfig(content, ConfigParserHandler.getInstance().parseConfig(content, key.getFileType()));
+    }
+}
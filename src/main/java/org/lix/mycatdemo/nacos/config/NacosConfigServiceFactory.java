@@ -0,0 +1,29 @@
+package org.lix.mycatdemo.nacos.config;
+
+import com.alibaba.nacos.api.NacosFactory;
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.exception.NacosException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+/**
+ * 基于 Nacos 服务端的 ConfigService
+ */
+@Component
+@Profile("!config-stress")
+public class NacosConfigServiceFactory implements ConfigServiceFactory {
+
+    @Value("${spring.cloud.nacos.config.server-addr}")
+    private String serverAddr;
+
+    @Override
+    public ConfigService create(String namespaceId) throws NacosException {
+        Properties properties = new Properties();
+        properties.put("serverAddr", serverAddr);
+        properties.put("namespace", namespaceId);
+        return NacosFactory.createConfigService(properties);
+    }
+}
@@ -0,0 +1,147 @@
+package org.lix.mycatdemo.nacos.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 配置变更总线：对比新旧扁平化配置，生成键级别的变更事件并通过 Spring 事件发布
+ * 订阅者使用 @EventListener 监听 ShardingConfigChangeEvent，只处理自己关心的变化
+ */
+@Slf4j
+@Component
+public class ConfigChangeBus {
+
+    private static final String DATA_SOURCES_PREFIX = "spring.shardingsphere.datasource.";
+    private static final String DATA_SOURCE_NAMES_KEY = DATA_SOURCES_PREFIX + "names";
+    private static final String SHARDING_TABLES_PREFIX = "spring.shardingsphere.sharding.tables.";
+    private static final String MASTER_SLAVE_RULES_PREFIX = "spring.shardingsphere.sharding.master-slave-rules.";
+    private static final String SHARDING_PREFIX = "spring.shardingsphere.sharding.";
+    private static final String PROPS_PREFIX = "spring.shardingsphere.props.";
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 对比新旧配置，生成变更事件
+     * @param oldConfig 旧的扁平化配置
+     * @param newConfig 新的扁平化配置
+     * @return 变更事件，配置无变化时为空
+     */
+    public List<ShardingConfigChangeEvent> diff(Map<String, Object> oldConfig, Map<String, Object> newConfig) {
+        Set<String> changedKeys = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : newConfig.entrySet()) {
+            if (!Objects.equals(asString(entry.getValue()), asString(oldConfig.get(entry.getKey())))) {
+                changedKeys.add(entry.getKey());
+            }
+        }
+        for (String key : oldConfig.keySet()) {
+            if (!newConfig.containsKey(key)) {
+                changedKeys.add(key);
+            }
+        }
+
+        // 类型 + 对象 → 变化的键
+        Map<ConfigChangeType, Map<String, Set<String>>> grouped = new EnumMap<>(ConfigChangeType.class);
+        for (String key : changedKeys) {
+            if (key.equals(DATA_SOURCE_NAMES_KEY)) {
+                diffNames(oldConfig.get(key), newConfig.get(key), ConfigChangeType.DATA_SOURCE_ADDED,
+                        ConfigChangeType.DATA_SOURCE_REMOVED, key, grouped);
+            } else if (key.startsWith(DATA_SOURCES_PREFIX)) {
+                String dsName = segment(key, DATA_SOURCES_PREFIX);
+                boolean poolSize = key.endsWith(".hikari.maximum-pool-size") || key.endsWith(".hikari.minimum-idle");
+                add(grouped, poolSize ? ConfigChangeType.POOL_SIZE_CHANGED : ConfigChangeType.DATA_SOURCE_CHANGED, dsName, key);
+            } else if (key.startsWith(SHARDING_TABLES_PREFIX)) {
+                add(grouped, ConfigChangeType.TABLE_RULE_CHANGED, segment(key, SHARDING_TABLES_PREFIX), key);
+            } else if (key.startsWith(MASTER_SLAVE_RULES_PREFIX)) {
+                String msName = segment(key, MASTER_SLAVE_RULES_PREFIX);
+                if (key.endsWith(".slave-data-source-names")) {
+                    diffNames(oldConfig.get(key), newConfig.get(key), ConfigChangeType.REPLICA_ADDED,
+                            ConfigChangeType.REPLICA_REMOVED, key, grouped);
+                } else if (key.endsWith(".load-balance-algorithm-type")
+                        || key.startsWith(MASTER_SLAVE_RULES_PREFIX + msName + ".props.")) {
+                    // 4.1.1 中负载均衡算法参数配置在 master-slave-rules.<name>.props 下
+                    add(grouped, ConfigChangeType.LOAD_BALANCE_CHANGED, msName, key);
+                } else {
+                    add(grouped, ConfigChangeType.MASTER_SLAVE_RULE_CHANGED, msName, key);
+                }
+            } else if (key.startsWith(SHARDING_PREFIX)) {
+                add(grouped, ConfigChangeType.SHARDING_RULE_CHANGED, "sharding", key);
+            } else if (key.startsWith(PROPS_PREFIX)) {
+                add(grouped, ConfigChangeType.PROPS_CHANGED, "props", key);
+            } else {
+                add(grouped, ConfigChangeType.OTHER, "other", key);
+            }
+        }
+
+        List<ShardingConfigChangeEvent> events = new ArrayList<>();
+        grouped.forEach((type, targets) -> targets.forEach((target, keys) ->
+                events.add(new ShardingConfigChangeEvent(type, target, keys, false))));
+        return events;
+    }
+
+    /**
+     * 发布变更事件
+     * @param events 变更事件
+     * @param fullRebuild 是否已通过重建 ShardingDataSource 生效
+     */
+    public void publish(List<ShardingConfigChangeEvent> events, boolean fullRebuild) {
+        for (ShardingConfigChangeEvent event : events) {
+            ShardingConfigChangeEvent published = event.withFullRebuild(fullRebuild);
+            log.info("发布配置变更事件: {}", published);
+            applicationEventPublisher.publishEvent(published);
+        }
+    }
+
+    /**
+     * 对比逗号分隔的名称列表，如 datasource.names、slave-data-source-names
+     */
+    private void diffNames(Object oldValue, Object newValue, ConfigChangeType addedType, ConfigChangeType removedType,
+                           String key, Map<ConfigChangeType, Map<String, Set<String>>> grouped) {
+        Set<String> oldNames = splitNames(oldValue);
+        Set<String> newNames = splitNames(newValue);
+        for (String name : newNames) {
+            if (!oldNames.contains(name)) {
+                add(grouped, addedType, name, key);
+            }
+        }
+        for (String name : oldNames) {
+            if (!newNames.contains(name)) {
+                add(grouped, removedType, name, key);
+            }
+        }
+    }
+
+    private Set<String> splitNames(Object value) {
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(value.toString().split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * 取前缀后的第一段，如 spring.shardingsphere.datasource.ds_0.url → ds_0
+     */
+    private String segment(String key, String prefix) {
+        String rest = key.substring(prefix.length());
+        int index = rest.indexOf('.');
+        return index < 0 ? rest : rest.substring(0, index);
+    }
+
+    private void add(Map<ConfigChangeType, Map<String, Set<String>>> grouped, ConfigChangeType type, String target, String key) {
+        grouped.computeIfAbsent(type, t -> new TreeMap<>())
+                .computeIfAbsent(target, t -> new TreeSet<>())
+                .add(key);
+    }
+
+    private String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package org.lix.mycatdemo.nacos.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Sharding-JDBC 配置变更类型
+ */
+@Getter
+@AllArgsConstructor
+public enum ConfigChangeType {
+
+    DATA_SOURCE_ADDED(false),
+    DATA_SOURCE_REMOVED(false),
+    DATA_SOURCE_CHANGED(false),
+    /**
+     * 连接池大小变化，可直接调整现有连接池
+     */
+    POOL_SIZE_CHANGED(true),
+    TABLE_RULE_CHANGED(false),
+    SHARDING_RULE_CHANGED(false),
+    REPLICA_ADDED(false),
+    REPLICA_REMOVED(false),
+    LOAD_BALANCE_CHANGED(false),
+    MASTER_SLAVE_RULE_CHANGED(false),
+    PROPS_CHANGED(false),
+    OTHER(false);
+
+    /**
+     * 是否可以在不重建 ShardingDataSource 的情况下生效
+     */
+    private final boolean liveApplicable;
+}
@@ -0,0 +1,36 @@
+package org.lix.mycatdemo.nacos.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.With;
+
+import java.util.Set;
+
+/**
+ * Sharding-JDBC 配置变更事件，按键级别差异生成
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ShardingConfigChangeEvent {
+
+    private final ConfigChangeType type;
+
+    /**
+     * 变更对象：数据源名、表名、主从规则名等
+     */
+    private final String target;
+
+    /**
+     * 变化的配置键
+     */
+    private final Set<String> changedKeys;
+
+    /**
+     * 本次变更是否已通过重建 ShardingDataSource 生效
+     * 订阅者据此判断是否还需要做增量调整
+     */
+    @With
+    private final boolean fullRebuild;
+}
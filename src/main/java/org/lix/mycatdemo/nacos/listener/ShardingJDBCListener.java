@@ -16,6 +16,7 @@ import org.apache.shardingsphere.api.config.sharding.TableRuleConfiguration;
 import org.apache.shardingsphere.api.config.sharding.strategy.InlineShardingStrategyConfiguration;
 import org.apache.shardingsphere.shardingjdbc.api.ShardingDataSourceFactory;
 import org.apache.shardingsphere.shardingjdbc.jdbc.core.datasource.ShardingDataSource;
+import org.lix.mycatdemo.nacos.config.ConfigKey;
 import org.lix.mycatdemo.nacos.config.DynamicConfigManager;
 import org.lix.mycatdemo.nacos.refresher.ShardingJDBCConfigRefresher;
 import org.lix.mycatdemo.parser.ConfigFileTypeEnum;
@@ -56,6 +57,23 @@ public class ShardingJDBCListener {
     @Value("${sharding-JDBC.group}")
     private String group;
 
+    /**
+     * XXX Nacos 每次通知都会调用 getExecutor，线程池必须复用，否则每次推送都会泄漏一个线程
+     * 自定义单线程池：避免阻塞 Nacos 共享线程池，且保证刷新串行
+     */
+    private final Executor refreshExecutor = new ThreadPoolExecutor(
+            1, 1,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(10),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "sharding-jdbc-universal-refresh-thread");
+                }
+            },
+            new ThreadPoolExecutor.DiscardOldestPolicy() // 队列满时丢弃最旧任务，避免阻塞
+    );
+
     @EventListener
     public void onContextRefreshed(ContextRefreshedEvent event) {
         // 确保只执行一次（避免父子容器重复执行）
@@ -71,28 +89,25 @@ public class ShardingJDBCListener {
             ConfigService configService = myDynamicConfigManager.getConfigService(namespaceId);
             log.info("dataId:{}", dataId);
             log.info("group:{}", group);
+            ConfigKey configKey = new ConfigKey("public", dataId, group);
+            // 启动时优先用本地快照刷新分片配置，远端配置在后台拉取，不一致时再刷新一次
+            // 这次刷新同时记下生效的配置，之后的推送可以按差异增量调整，不必先全量重建一次
+            // 远端配置已在启动预加载时拉取并解析，这里直接使用解析结果
+            myDynamicConfigManager.getConfigPreferSnapshot(configKey,
+                    loaded -> refreshExecutor.execute(() ->
+                            shardingJDBCConfigRefresher.refresh(loaded.getContent(), loaded.getProperties())));
             // 注册 Nacos 配置监听器
             configService.addListener(dataId, group, new Listener() {
                 @Override
                 public void receiveConfigInfo(String configContent) {
+                    // 推送的配置写入本地快照，配置中心不可用时启动使用
+                    myDynamicConfigManager.saveSnapshot(configKey, configContent);
                     shardingJDBCConfigRefresher.refresh(configContent);
                 }
 
                 @Override
                 public Executor getExecutor() {
-                    // 自定义单线程池：避免阻塞 Nacos 共享线程池，且保证刷新串行
-                    return new ThreadPoolExecutor(
-                            1, 1,
-                            60L, TimeUnit.SECONDS,
-                            new LinkedBlockingQueue<>(10),
-                            new ThreadFactory() {
-                                @Override
-                                public Thread newThread(Runnable r) {
-                                    return new Thread(r, "sharding-jdbc-universal-refresh-thread");
-                                }
-                            },
-                            new ThreadPoolExecutor.DiscardOldestPolicy() // 队列满时丢弃最旧任务，避免阻塞
-                    );
+                    return refreshExecutor;
                 }
             });
             log.info("通用 Sharding-JDBC 4.1.1 版本 Nacos 配置监听器注册成功，dataId: {}", dataId);
@@ -0,0 +1,102 @@
+package org.lix.mycatdemo.nacos.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.nacos.config.DynamicConfigManager;
+import org.lix.mycatdemo.nacos.refresher.ShardingJDBCConfigRefresher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 配置推送压测：按指定速率向进程内 ConfigService 发布 Sharding-JDBC 配置
+ * 每次发布按 StressPushMode 改动一个真实配置值，分别压测可直接生效的调整和重建 ShardingDataSource 的停顿
+ * 统计发布、实际通知、被合并的次数，以及刷新器的刷新次数和持锁耗时
+ */
+@Slf4j
+@Component
+@Profile("config-stress")
+public class ConfigPushStressTester {
+
+    @Resource
+    private DynamicConfigManager myDynamicConfigManager;
+
+    @Resource
+    private InMemoryConfigServiceFactory inMemoryConfigServiceFactory;
+
+    @Resource
+    private ShardingJDBCConfigRefresher shardingJDBCConfigRefresher;
+
+    @Value("${sharding-JDBC.dataId}")
+    private String dataId;
+
+    @Value("${sharding-JDBC.group}")
+    private String group;
+
+    /**
+     * 压测使用的基础配置，每次发布按变更方式改动其中一个配置值
+     */
+    @Value("${config.memory.stress-base-resource:application-dev.yaml}")
+    private String baseResource;
+
+    /**
+     * 按速率发布配置，发布结束后等待 drainMillis 让通知投递完
+     * @param pushes 发布次数
+     * @param pushesPerSecond 每秒发布次数
+     * @param drainMillis 发布结束后的等待时间
+     * @param mode 每次发布改动的配置
+     * @return 统计信息
+     */
+    public Map<String, Object> run(int pushes, int pushesPerSecond, long drainMillis, StressPushMode mode) throws IOException {
+        String base = StreamUtils.copyToString(new ClassPathResource(baseResource).getInputStream(), StandardCharsets.UTF_8);
+        String namespaceId = myDynamicConfigManager.getNamespaceId("public");
+        myDynamicConfigManager.getConfigService(namespaceId);
+        InMemoryConfigService configService = inMemoryConfigServiceFactory.get(namespaceId);
+
+        long publishedBefore = configService.getPublishedCount();
+        long deliveredBefore = configService.getDeliveredCount();
+        long skippedBefore = configService.getSkippedCount();
+        Map<String, Long> refreshBefore = shardingJDBCConfigRefresher.getRefreshStatistics();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, pushesPerSecond);
+        long start = System.nanoTime();
+        for (int i = 0; i < pushes; i++) {
+            long waitNanos = start + i * intervalNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            configService.publishConfig(dataId, group, mode.apply(base, i));
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try {
+            Thread.sleep(drainMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<String, Long> refreshAfter = shardingJDBCConfigRefresher.getRefreshStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode.name());
+        result.put("publishMillis", publishMillis);
+        result.put("actualPushesPerSecond", publishMillis == 0 ? pushes : pushes * 1000L / publishMillis);
+        result.put("published", configService.getPublishedCount() - publishedBefore);
+        result.put("delivered", configService.getDeliveredCount() - deliveredBefore);
+        result.put("coalesced", configService.getSkippedCount() - skippedBefore);
+        result.put("refreshes", refreshAfter.get("refreshCount") - refreshBefore.get("refreshCount"));
+        result.put("refreshMillis", refreshAfter.get("totalRefreshMillis") - refreshBefore.get("totalRefreshMillis"));
+        result.put("maxRefreshMillis", refreshAfter.get("maxRefreshMillis"));
+        result.put("yamlRejected", refreshAfter.get("yamlRejectedCount") - refreshBefore.get("yamlRejectedCount"));
+        log.info("配置推送压测完成: {}", result);
+        return result;
+    }
+}
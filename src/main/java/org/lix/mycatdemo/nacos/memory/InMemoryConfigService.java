@@ -0,0 +1,241 @@
+package org.lix.mycatdemo.nacos.memory;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的 ConfigService，用于在没有 Nacos 的情况下压测配置刷新链路
+ *
+ * 推送语义尽量贴近 Nacos 客户端：
+ * 1. 发布后延迟 deliveryDelayMs 再通知，通知时读取的是最新内容，短时间内的多次发布会被合并
+ * 2. 监听器内容的 md5 与上次通知一致时不重复通知
+ * 3. redeliveryTimes > 0 时忽略 md5 重复投递，模拟重复推送
+ */
+@Slf4j
+public class InMemoryConfigService implements ConfigService {
+
+    private final String namespaceId;
+
+    private final long deliveryDelayMs;
+
+    private final int redeliveryTimes;
+
+    /**
+     * dataId+group → 配置内容
+     */
+    private final Map<String, String> contents = new ConcurrentHashMap<>();
+
+    /**
+     * dataId+group → 监听器
+     */
+    private final Map<String, List<ListenerWrapper>> listeners = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService dispatcher;
+
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong deliveredCount = new AtomicLong(0);
+    private final AtomicLong skippedCount = new AtomicLong(0);
+
+    private volatile boolean running = true;
+
+    public InMemoryConfigService(String namespaceId, long deliveryDelayMs, int redeliveryTimes) {
+        this.namespaceId = namespaceId;
+        this.deliveryDelayMs = deliveryDelayMs;
+        this.redeliveryTimes = redeliveryTimes;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "in-memory-config-dispatcher-" + namespaceId);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public String getConfig(String dataId, String group, long timeoutMs) {
+        return contents.get(keyOf(dataId, group));
+    }
+
+    @Override
+    public String getConfigAndSignListener(String dataId, String group, long timeoutMs, Listener listener) {
+        String content = getConfig(dataId, group, timeoutMs);
+        addListener(dataId, group, listener, content);
+        return content;
+    }
+
+    @Override
+    public void addListener(String dataId, String group, Listener listener) {
+        addListener(dataId, group, listener, getConfig(dataId, group, 0));
+    }
+
+    private void addListener(String dataId, String group, Listener listener, String currentContent) {
+        listeners.computeIfAbsent(keyOf(dataId, group), k -> new CopyOnWriteArrayList<>())
+                .add(new ListenerWrapper(listener, md5(currentContent)));
+    }
+
+    @Override
+    public boolean publishConfig(String dataId, String group, String content) {
+        return publishConfig(dataId, group, content, null);
+    }
+
+    @Override
+    public boolean publishConfig(String dataId, String group, String content, String type) {
+        String key = keyOf(dataId, group);
+        contents.put(key, content);
+        publishedCount.incrementAndGet();
+        scheduleDelivery(key);
+        return true;
+    }
+
+    @Override
+    public boolean publishConfigCas(String dataId, String group, String content, String casMd5) {
+        return publishConfigCas(dataId, group, content, casMd5, null);
+    }
+
+    @Override
+    public boolean publishConfigCas(String dataId, String group, String content, String casMd5, String type) {
+        String key = keyOf(dataId, group);
+        synchronized (contents) {
+            if (!Objects.equals(md5(contents.get(key)), casMd5)) {
+                return false;
+            }
+            return publishConfig(dataId, group, content, type);
+        }
+    }
+
+    @Override
+    public boolean removeConfig(String dataId, String group) {
+        String key = keyOf(dataId, group);
+        if (contents.remove(key) != null) {
+            scheduleDelivery(key);
+        }
+        return true;
+    }
+
+    @Override
+    public void removeListener(String dataId, String group, Listener listener) {
+        List<ListenerWrapper> wrappers = listeners.get(keyOf(dataId, group));
+        if (wrappers != null) {
+            wrappers.removeIf(wrapper -> wrapper.listener == listener);
+        }
+    }
+
+    @Override
+    public String getServerStatus() {
+        return running ? "UP" : "DOWN";
+    }
+
+    @Override
+    public void shutDown() {
+        running = false;
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 预置配置：不计入发布次数，也不通知监听器
+     */
+    public void seed(String dataId, String group, String content) {
+        contents.put(keyOf(dataId, group), content);
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * 因内容未变化（已被合并）而跳过的通知次数
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    private void scheduleDelivery(String key) {
+        if (!running) {
+            return;
+        }
+        dispatcher.schedule(() -> deliver(key, false), deliveryDelayMs, TimeUnit.MILLISECONDS);
+        for (int i = 1; i <= redeliveryTimes; i++) {
+            dispatcher.schedule(() -> deliver(key, true), deliveryDelayMs * (i + 1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 通知监听器：与 Nacos 一样读取投递时刻的最新内容
+     */
+    private void deliver(String key, boolean redelivery) {
+        List<ListenerWrapper> wrappers = listeners.get(key);
+        if (wrappers == null || wrappers.isEmpty()) {
+            return;
+        }
+        String content = contents.get(key);
+        String md5 = md5(content);
+        for (ListenerWrapper wrapper : wrappers) {
+            if (!redelivery && Objects.equals(wrapper.lastMd5, md5)) {
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            wrapper.lastMd5 = md5;
+            Runnable task = () -> {
+                try {
+                    wrapper.listener.receiveConfigInfo(content);
+                    deliveredCount.incrementAndGet();
+                } catch (Throwable t) {
+                    log.error("进程内配置通知失败, namespace: {}, key: {}", namespaceId, key, t);
+                }
+            };
+            Executor executor = wrapper.listener.getExecutor();
+            if (executor == null) {
+                task.run();
+            } else {
+                executor.execute(task);
+            }
+        }
+    }
+
+    private String keyOf(String dataId, String group) {
+        return dataId + "+" + group;
+    }
+
+    private static String md5(String content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ListenerWrapper {
+
+        private final Listener listener;
+
+        /**
+         * 只在 dispatcher 单线程中读写
+         */
+        private String lastMd5;
+
+        private ListenerWrapper(Listener listener, String lastMd5) {
+            this.listener = listener;
+            this.lastMd5 = lastMd5;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.lix.mycatdemo.nacos.memory;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.nacos.config.ConfigServiceFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * config-stress profile 下使用进程内 ConfigService 替代 Nacos
+ * 启动：--spring.profiles.active=dev,config-stress
+ */
+@Slf4j
+@Component
+@Profile("config-stress")
+public class InMemoryConfigServiceFactory implements ConfigServiceFactory {
+
+    /**
+     * 发布到通知监听器的延迟
+     */
+    @Value("${config.memory.delivery-delay-ms:10}")
+    private long deliveryDelayMs;
+
+    /**
+     * 每次发布额外重复投递的次数
+     */
+    @Value("${config.memory.redelivery-times:0}")
+    private int redeliveryTimes;
+
+    @Value("${namespace.dataId}")
+    private String namespaceConfig;
+
+    @Value("${namespace.group}")
+    private String namespaceGroup;
+
+    /**
+     * 命名空间映射：public 对应默认命名空间
+     */
+    @Value("${config.memory.namespace-mapping:public=}")
+    private String namespaceMapping;
+
+    private final Map<String, InMemoryConfigService> services = new ConcurrentHashMap<>();
+
+    @Override
+    public ConfigService create(String namespaceId) {
+        return services.computeIfAbsent(namespaceId, id -> {
+            InMemoryConfigService service = new InMemoryConfigService(id, deliveryDelayMs, redeliveryTimes);
+            if (id.isEmpty()) {
+                service.seed(namespaceConfig, namespaceGroup, namespaceMapping);
+            }
+            log.info("创建进程内 ConfigService, namespace: {}, 通知延迟: {}ms, 重复投递: {}次",
+                    id, deliveryDelayMs, redeliveryTimes);
+            return service;
+        });
+    }
+
+    public InMemoryConfigService get(String namespaceId) {
+        return services.get(namespaceId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        services.values().forEach(InMemoryConfigService::shutDown);
+    }
+}
@@ -0,0 +1,54 @@
+package org.lix.mycatdemo.nacos.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.lix.mycatdemo.exception.BusinessException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 配置推送压测的变更方式：每次发布改动基础配置中的一个真实配置值，使刷新器实际生效而不是解析后跳过
+ */
+@Getter
+@AllArgsConstructor
+public enum StressPushMode {
+
+    /**
+     * 改第一个连接池的 maximum-pool-size，属于可直接生效的变更，只调整现有连接池
+     */
+    LIVE(Pattern.compile("(maximum-pool-size:\\s*)(\\d+)")),
+
+    /**
+     * 改第一个读写分离规则的 soft.lag.milliseconds，负载均衡变更需要重建 ShardingDataSource
+     */
+    REBUILD(Pattern.compile("(soft\\.lag\\.milliseconds:\\s*)(\\d+)"));
+
+    /**
+     * 第一组为键，第二组为要改动的数值
+     */
+    private final Pattern valuePattern;
+
+    /**
+     * 生成第 seq 次发布的配置：数值在原值 +1 ~ +10 之间循环，相邻两次发布的内容一定不同，也不会与原配置相同
+     * @param base 基础配置
+     * @param seq 发布序号
+     */
+    public String apply(String base, int seq) {
+        Matcher matcher = valuePattern.matcher(base);
+        if (!matcher.find()) {
+            throw new BusinessException("压测基础配置中没有可改动的配置项: " + valuePattern.pattern());
+        }
+        long value = Long.parseLong(matcher.group(2)) + 1 + seq % 10;
+        return base.substring(0, matcher.start(2)) + value + base.substring(matcher.end(2));
+    }
+
+    public static StressPushMode of(String name) {
+        for (StressPushMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new BusinessException("不支持的压测变更方式: " + name);
+    }
+}
@@ -4,6 +4,7 @@ import com.alibaba.cloud.commons.lang.StringUtils;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.google.common.collect.Sets;
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariConfigMXBean;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.api.config.masterslave.LoadBalanceStrategyConfiguration;
@@ -11,17 +12,35 @@ import org.apache.shardingsphere.api.config.masterslave.MasterSlaveRuleConfigura
 import org.apache.shardingsphere.api.config.sharding.KeyGeneratorConfiguration;
 import org.apache.shardingsphere.api.config.sharding.ShardingRuleConfiguration;
 import org.apache.shardingsphere.api.config.sharding.TableRuleConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.ComplexShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.HintShardingStrategyConfiguration;
 import org.apache.shardingsphere.api.config.sharding.strategy.InlineShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.ShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.StandardShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.hint.HintShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.standard.PreciseShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.standard.RangeShardingAlgorithm;
 import org.apache.shardingsphere.shardingjdbc.api.ShardingDataSourceFactory;
 import org.apache.shardingsphere.shardingjdbc.jdbc.core.datasource.ShardingDataSource;
 import org.lix.mycatdemo.nacos.config.DynamicConfigManager;
+import org.lix.mycatdemo.nacos.event.ConfigChangeBus;
+import org.lix.mycatdemo.nacos.event.ConfigChangeType;
+import org.lix.mycatdemo.nacos.event.ShardingConfigChangeEvent;
 import org.lix.mycatdemo.parser.ConfigFileTypeEnum;
 import org.lix.mycatdemo.parser.ConfigParserHandler;
+import org.lix.mycatdemo.parser.YamlConfigParser;
+import org.lix.mycatdemo.sharding.loadbalance.EwmaP2cLoadBalanceAlgorithm;
+import org.lix.mycatdemo.sharding.loadbalance.LatencyTrackingDataSource;
+import org.lix.mycatdemo.sharding.pool.PoolAcquireMetrics;
+import org.lix.mycatdemo.sharding.resilience.ShardGuardFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.DefaultSingletonBeanRegistry;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
@@ -29,6 +48,7 @@ import javax.annotation.Resource;
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -50,9 +70,29 @@ public class ShardingJDBCConfigRefresher{
     @Value("${sharding-JDBC.group}")
     private String group;
 
+    /**
+     * 是否包装从库数据源统计查询耗时，供 EWMA_P2C 负载均衡算法使用；只包装 EWMA_P2C 规则的从库
+     */
+    @Value("${order.replica.latency-tracking.enabled:true}")
+    private boolean latencyTrackingEnabled;
+
     @Resource
     private ApplicationContext applicationContext;
 
+    /**
+     * 配置变更总线：按键级别对比新旧配置
+     */
+    @Resource
+    private ConfigChangeBus configChangeBus;
+
+    @Resource
+    private ShardGuardFactory shardGuardFactory;
+
+    /**
+     * 最近一次生效的扁平化配置，首次推送前为 null
+     */
+    private volatile Map<String, Object> lastFlatConfigMap;
+
     /**
      * shardingDataSource数据源
      */
@@ -64,18 +104,37 @@ public class ShardingJDBCConfigRefresher{
     private static final String SHARDING_TABLES_PREFIX = "spring.shardingsphere.sharding.tables.";
     private static final String DATA_SOURCES_PREFIX = "spring.shardingsphere.datasource.";
     private static final String MASTER_SLAVE_RULES_PREFIX = "spring.shardingsphere.sharding.master-slave-rules.";
+    private static final String PROPS_PREFIX = "spring.shardingsphere.props.";
 
     /**
      * 锁对象：保证数据源刷新线程安全
      */
     private final Object refreshLock = new Object();
 
+    /**
+     * 刷新统计：收到的刷新请求数、持锁总耗时、最大持锁耗时（用于压测刷新合并与停顿）
+     */
+    private final AtomicLong refreshCount = new AtomicLong(0);
+    private final AtomicLong totalRefreshMillis = new AtomicLong(0);
+    private final AtomicLong maxRefreshMillis = new AtomicLong(0);
+
     /**
      * XXX 核心操作 : 基于内容刷新数据源
      * @param configContent 刷新的配置
      */
     public void refresh(String configContent){
+        refresh(configContent, null);
+    }
+
+    /**
+     * 基于内容刷新数据源，已在配置加载线程中解析过的配置直接使用解析结果
+     * @param configContent 刷新的配置
+     * @param parsedConfigMap 解析后的配置，为 null 时在持锁后解析
+     */
+    public void refresh(String configContent, Map<String, Object> parsedConfigMap){
         synchronized (refreshLock) {
+            long start = System.currentTimeMillis();
+            refreshCount.incrementAndGet();
             DataSource oldDataSource = null;
             try {
                 log.info("===== 收到 Nacos 配置变化通知 =====");
@@ -83,11 +142,13 @@ public class ShardingJDBCConfigRefresher{
                 log.debug("配置内容长度: {} 字符", configContent != null ? configContent.length() : 0);
 
                 // 1. 解析配置（使用自定义 YAML 解析器）
-                String extension = dataId.substring(dataId.indexOf(".") + 1);
-                log.info("开始解析配置，dataId: {}, 文件类型: {}", dataId, extension);
-
-                Map<String, Object> flatConfigMap = ConfigParserHandler.getInstance()
-                        .parseConfig(configContent, ConfigFileTypeEnum.of(extension));
+                Map<String, Object> flatConfigMap = parsedConfigMap;
+                if (flatConfigMap == null) {
+                    String extension = dataId.substring(dataId.indexOf(".") + 1);
+                    log.info("开始解析配置，dataId: {}, 文件类型: {}", dataId, extension);
+                    flatConfigMap = ConfigParserHandler.getInstance()
+                            .parseConfig(configContent, ConfigFileTypeEnum.of(extension));
+                }
 
                 log.info("{}", flatConfigMap);
                 log.info("配置解析完成，解析后的配置项数量：{}", flatConfigMap.size());
@@ -107,9 +168,29 @@ public class ShardingJDBCConfigRefresher{
                             .forEach(entry -> log.debug("  {} = {}", entry.getKey(), entry.getValue()));
                 }
 
+                // 对比上一次生效的配置：无变化直接跳过；只有可直接生效的变化时，由订阅者增量调整，不重建数据源
+                List<ShardingConfigChangeEvent> changeEvents = lastFlatConfigMap == null
+                        ? Collections.emptyList()
+                        : configChangeBus.diff(lastFlatConfigMap, flatConfigMap);
+                if (lastFlatConfigMap != null) {
+                    if (changeEvents.isEmpty()) {
+                        log.info("Sharding-JDBC 配置无变化，跳过刷新");
+                        return;
+                    }
+                    boolean liveApplicable = changeEvents.stream().allMatch(event -> event.getType().isLiveApplicable());
+                    if (liveApplicable && getOldShardingDataSource() instanceof ShardingDataSource) {
+                        log.info("Sharding-JDBC 配置变化均可直接生效，跳过重建数据源: {}", changeEvents);
+                        lastFlatConfigMap = flatConfigMap;
+                        configChangeBus.publish(changeEvents, false);
+                        return;
+                    }
+                }
+
                 // 2. 通用化构建配置：动态识别所有表、数据源
                 ShardingRuleConfiguration shardingRuleConfig = buildUniversalShardingRuleConfig(flatConfigMap);
                 Map<String, DataSource> actualDataSources = buildUniversalDataSources(flatConfigMap);
+                wrapSlaveDataSources(actualDataSources, shardingRuleConfig);
+                actualDataSources.replaceAll(shardGuardFactory::wrap);
 
                 // 检查数据源是否为空
                 if (actualDataSources.isEmpty()) {
@@ -147,13 +228,66 @@ public class ShardingJDBCConfigRefresher{
 
                 log.info("通用 Sharding-JDBC 4.1.1 版本数据源刷新成功，包含 {} 个数据源，{} 个分片表",
                         actualDataSources.size(), shardingRuleConfig.getTableRuleConfigs().size());
+
+                lastFlatConfigMap = flatConfigMap;
+                configChangeBus.publish(changeEvents, true);
             } catch (Exception e) {
                 log.error("刷新通用 Sharding-JDBC 数据源失败", e);
                 // TODO 这里应该将try-catch块拆开，如果新数据源配置失败，使用旧的数据源
+            } finally {
+                long cost = System.currentTimeMillis() - start;
+                totalRefreshMillis.addAndGet(cost);
+                maxRefreshMillis.accumulateAndGet(cost, Math::max);
             }
         }
     }
 
+    /**
+     * 订阅连接池大小变化：直接通过 HikariConfigMXBean 调整现有连接池
+     */
+    @EventListener
+    public void onPoolSizeChanged(ShardingConfigChangeEvent event) {
+        if (event.isFullRebuild() || event.getType() != ConfigChangeType.POOL_SIZE_CHANGED) {
+            return;
+        }
+        DataSource current = getOldShardingDataSource();
+        if (!(current instanceof ShardingDataSource)) {
+            return;
+        }
+        DataSource dataSource = unwrapDataSource(((ShardingDataSource) current).getDataSourceMap().get(event.getTarget()));
+        if (!(dataSource instanceof HikariDataSource)) {
+            log.warn("数据源 {} 不是 Hikari 连接池，无法直接调整连接池大小", event.getTarget());
+            return;
+        }
+
+        String poolPrefix = DATA_SOURCES_PREFIX + event.getTarget() + ".hikari.";
+        int maxPoolSize = getIntConfig(lastFlatConfigMap, poolPrefix + "maximum-pool-size", 10);
+        int minIdle = getIntConfig(lastFlatConfigMap, poolPrefix + "minimum-idle", 2);
+        HikariConfigMXBean configMXBean = ((HikariDataSource) dataSource).getHikariConfigMXBean();
+        // 扩容先调上限，缩容先调最小空闲，保证任意时刻 minimumIdle <= maximumPoolSize
+        if (maxPoolSize >= configMXBean.getMaximumPoolSize()) {
+            configMXBean.setMaximumPoolSize(maxPoolSize);
+            configMXBean.setMinimumIdle(minIdle);
+        } else {
+            configMXBean.setMinimumIdle(minIdle);
+            configMXBean.setMaximumPoolSize(maxPoolSize);
+        }
+        log.info("数据源 {} 连接池大小已直接调整：maximumPoolSize={}，minimumIdle={}", event.getTarget(), maxPoolSize, minIdle);
+    }
+
+    /**
+     * 获取刷新统计信息
+     * @return refreshCount / totalRefreshMillis / maxRefreshMillis / yamlRejectedCount（被拒绝解析的 YAML 配置次数）
+     */
+    public Map<String, Long> getRefreshStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("refreshCount", refreshCount.get());
+        statistics.put("totalRefreshMillis", totalRefreshMillis.get());
+        statistics.put("maxRefreshMillis", maxRefreshMillis.get());
+        statistics.put("yamlRejectedCount", YamlConfigParser.getRejectedCount());
+        return statistics;
+    }
+
     /**
      * 通用化构建分片规则配置：动态识别所有表、分片策略
      */
@@ -228,6 +362,8 @@ public class ShardingJDBCConfigRefresher{
      * spring.shardingsphere.sharding.master-slave-rules.ms_0.master-data-source-name=ds_0_master
      * spring.shardingsphere.sharding.master-slave-rules.ms_0.slave-data-source-names=ds_0_slave_0,ds_0_slave_1
      * spring.shardingsphere.sharding.master-slave-rules.ms_0.load-balance-algorithm-type=ROUND_ROBIN
+     * spring.shardingsphere.sharding.master-slave-rules.ms_0.props.max.lag.milliseconds=5000
+     * load-balance-algorithm-type 也可以是通过 SPI 注册的自定义算法，如 REPLICATION_LAG
      */
     private MasterSlaveRuleConfiguration buildMasterSlaveRuleConfig(Map<String, Object> flatConfigMap, String msRuleName) {
         String rulePrefix = MASTER_SLAVE_RULES_PREFIX + msRuleName + ".";
@@ -259,9 +395,17 @@ public class ShardingJDBCConfigRefresher{
             log.info("主从规则 {} 未配置负载均衡策略，使用默认值：{}", msRuleName, loadBalanceType);
         }
 
+        Properties loadBalanceProps = new Properties();
+        String loadBalancePropsPrefix = rulePrefix + "props.";
+        flatConfigMap.forEach((key, value) -> {
+            if (key.startsWith(loadBalancePropsPrefix) && value != null) {
+                loadBalanceProps.setProperty(key.substring(loadBalancePropsPrefix.length()), value.toString().trim());
+            }
+        });
+
         // 4. 构建主从规则配置（4.1.1 核心类）
         MasterSlaveRuleConfiguration msConfig = new MasterSlaveRuleConfiguration(msRuleName,
-                masterDsName, slaveDsNames, new LoadBalanceStrategyConfiguration(loadBalanceType));
+                masterDsName, slaveDsNames, new LoadBalanceStrategyConfiguration(loadBalanceType, loadBalanceProps));
 
         return msConfig;
     }
@@ -312,37 +456,34 @@ public class ShardingJDBCConfigRefresher{
 
         TableRuleConfiguration tableRuleConfig = new TableRuleConfiguration(tableName, actualDataNodes);
 
-        // 2. 动态读取分库策略（可选）
-        // TODO 这里分库规则不止inline吗
-        String dbShardingColumnKey = SHARDING_TABLES_PREFIX + tableName + ".database-strategy.inline.sharding-column";
-        String dbAlgorithmExprKey = SHARDING_TABLES_PREFIX + tableName + ".database-strategy.inline.algorithm-expression";
-        String dbShardingColumn = getStringConfig(flatConfigMap, dbShardingColumnKey);
-        String dbAlgorithmExpr = getStringConfig(flatConfigMap, dbAlgorithmExprKey);
-        if (StringUtils.isNotBlank(dbShardingColumn) && StringUtils.isNotBlank(dbAlgorithmExpr)) {
-            tableRuleConfig.setDatabaseShardingStrategyConfig(
-                    new InlineShardingStrategyConfiguration(dbShardingColumn, dbAlgorithmExpr)
-            );
-            log.info("表 {} 分库策略：分片列={}，算法表达式={}", tableName, dbShardingColumn, dbAlgorithmExpr);
+        // 2. 动态读取分库策略（可选）：支持 inline / standard / complex / hint
+        ShardingStrategyConfiguration dbStrategyConfig = buildShardingStrategyConfig(flatConfigMap,
+                SHARDING_TABLES_PREFIX + tableName + ".database-strategy.");
+        if (dbStrategyConfig != null) {
+            tableRuleConfig.setDatabaseShardingStrategyConfig(dbStrategyConfig);
+            log.info("表 {} 分库策略：{}", tableName, dbStrategyConfig.getClass().getSimpleName());
         }
 
         // 3. 动态读取分表策略（可选）
-        // TODO 这里分库规则不止inline吗
-        String tableShardingColumnKey = SHARDING_TABLES_PREFIX + tableName + ".table-strategy.inline.sharding-column";
-        String tableAlgorithmExprKey = SHARDING_TABLES_PREFIX + tableName + ".table-strategy.inline.algorithm-expression";
-        String tableShardingColumn = getStringConfig(flatConfigMap, tableShardingColumnKey);
-        String tableAlgorithmExpr = getStringConfig(flatConfigMap, tableAlgorithmExprKey);
-        if (StringUtils.isNotBlank(tableShardingColumn) && StringUtils.isNotBlank(tableAlgorithmExpr)) {
-            tableRuleConfig.setTableShardingStrategyConfig(
-                    new InlineShardingStrategyConfiguration(tableShardingColumn, tableAlgorithmExpr)
-            );
-            log.info("表 {} 分表策略：分片列={}，算法表达式={}", tableName, tableShardingColumn, tableAlgorithmExpr);
+        ShardingStrategyConfiguration tableStrategyConfig = buildShardingStrategyConfig(flatConfigMap,
+                SHARDING_TABLES_PREFIX + tableName + ".table-strategy.");
+        if (tableStrategyConfig != null) {
+            tableRuleConfig.setTableShardingStrategyConfig(tableStrategyConfig);
+            log.info("表 {} 分表策略：{}", tableName, tableStrategyConfig.getClass().getSimpleName());
         }
 
         // 4. 可扩展：动态读取主键生成策略、行表达式替换等（按需添加）
         String keyGeneratorColumn = getStringConfig(flatConfigMap, SHARDING_TABLES_PREFIX + tableName + ".key-generator.column");
         String keyGeneratorType = getStringConfig(flatConfigMap, SHARDING_TABLES_PREFIX + tableName + ".key-generator.type");
         if (StringUtils.isNotBlank(keyGeneratorColumn) && StringUtils.isNotBlank(keyGeneratorType)) {
-            KeyGeneratorConfiguration keyGeneratorConfig = new KeyGeneratorConfiguration(keyGeneratorType, keyGeneratorColumn);
+            Properties keyGeneratorProps = new Properties();
+            String keyGeneratorPropsPrefix = SHARDING_TABLES_PREFIX + tableName + ".key-generator.props.";
+            flatConfigMap.forEach((key, value) -> {
+                if (key.startsWith(keyGeneratorPropsPrefix) && value != null) {
+                    keyGeneratorProps.setProperty(key.substring(keyGeneratorPropsPrefix.length()), value.toString().trim());
+                }
+            });
+            KeyGeneratorConfiguration keyGeneratorConfig = new KeyGeneratorConfiguration(keyGeneratorType, keyGeneratorColumn, keyGeneratorProps);
             tableRuleConfig.setKeyGeneratorConfig(keyGeneratorConfig);
             log.info("表 {} 主键生成策略：列={}，类型={}", tableName, keyGeneratorColumn, keyGeneratorType);
         }
@@ -355,23 +496,71 @@ public class ShardingJDBCConfigRefresher{
      */
     private void buildDefaultShardingStrategy(Map<String, Object> flatConfigMap, ShardingRuleConfiguration ruleConfig) {
         // 默认分库策略
-        String defaultDbColumn = getStringConfig(flatConfigMap, "spring.shardingsphere.sharding.default-database-strategy.inline.sharding-column");
-        String defaultDbExpr = getStringConfig(flatConfigMap, "spring.shardingsphere.sharding.default-table-strategy.inline.algorithm-expression");
-        if (StringUtils.isNotBlank(defaultDbColumn) && StringUtils.isNotBlank(defaultDbExpr)) {
-            ruleConfig.setDefaultDatabaseShardingStrategyConfig(
-                    new InlineShardingStrategyConfiguration(defaultDbColumn, defaultDbExpr)
-            );
-            log.info("默认分库策略：分片列={}，算法表达式={}", defaultDbColumn, defaultDbExpr);
+        ShardingStrategyConfiguration defaultDbStrategy = buildShardingStrategyConfig(flatConfigMap,
+                "spring.shardingsphere.sharding.default-database-strategy.");
+        if (defaultDbStrategy != null) {
+            ruleConfig.setDefaultDatabaseShardingStrategyConfig(defaultDbStrategy);
+            log.info("默认分库策略：{}", defaultDbStrategy.getClass().getSimpleName());
         }
 
         // 默认分表策略
-        String defaultTableColumn = getStringConfig(flatConfigMap, "spring.shardingsphere.sharding.default-table-strategy.inline.sharding-column");
-        String defaultTableExpr = getStringConfig(flatConfigMap, "spring.shardingsphere.sharding.default-table-strategy.inline.algorithm-expression");
-        if (StringUtils.isNotBlank(defaultTableColumn) && StringUtils.isNotBlank(defaultTableExpr)) {
-            ruleConfig.setDefaultTableShardingStrategyConfig(
-                    new InlineShardingStrategyConfiguration(defaultTableColumn, defaultTableExpr)
-            );
-            log.info("默认分表策略：分片列={}，算法表达式={}", defaultTableColumn, defaultTableExpr);
+        ShardingStrategyConfiguration defaultTableStrategy = buildShardingStrategyConfig(flatConfigMap,
+                "spring.shardingsphere.sharding.default-table-strategy.");
+        if (defaultTableStrategy != null) {
+            ruleConfig.setDefaultTableShardingStrategyConfig(defaultTableStrategy);
+            log.info("默认分表策略：{}", defaultTableStrategy.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 构建分片策略，与 spring-boot-starter 的配置项一致：
+     * inline.sharding-column / inline.algorithm-expression
+     * standard.sharding-column / standard.precise-algorithm-class-name / standard.range-algorithm-class-name
+     * complex.sharding-columns / complex.algorithm-class-name
+     * hint.algorithm-class-name
+     * @param strategyPrefix 策略前缀，以 . 结尾
+     * @return 没有配置时返回 null
+     */
+    private ShardingStrategyConfiguration buildShardingStrategyConfig(Map<String, Object> flatConfigMap, String strategyPrefix) {
+        String inlineColumn = getStringConfig(flatConfigMap, strategyPrefix + "inline.sharding-column");
+        String inlineExpr = getStringConfig(flatConfigMap, strategyPrefix + "inline.algorithm-expression");
+        if (StringUtils.isNotBlank(inlineColumn) && StringUtils.isNotBlank(inlineExpr)) {
+            return new InlineShardingStrategyConfiguration(inlineColumn, inlineExpr);
+        }
+
+        String standardColumn = getStringConfig(flatConfigMap, strategyPrefix + "standard.sharding-column");
+        String preciseClassName = getStringConfig(flatConfigMap, strategyPrefix + "standard.precise-algorithm-class-name");
+        if (StringUtils.isNotBlank(standardColumn) && StringUtils.isNotBlank(preciseClassName)) {
+            String rangeClassName = getStringConfig(flatConfigMap, strategyPrefix + "standard.range-algorithm-class-name");
+            PreciseShardingAlgorithm<?> preciseAlgorithm = newAlgorithm(preciseClassName, PreciseShardingAlgorithm.class);
+            return StringUtils.isBlank(rangeClassName)
+                    ? new StandardShardingStrategyConfiguration(standardColumn, preciseAlgorithm)
+                    : new StandardShardingStrategyConfiguration(standardColumn, preciseAlgorithm,
+                            newAlgorithm(rangeClassName, RangeShardingAlgorithm.class));
+        }
+
+        String complexColumns = getStringConfig(flatConfigMap, strategyPrefix + "complex.sharding-columns");
+        String complexClassName = getStringConfig(flatConfigMap, strategyPrefix + "complex.algorithm-class-name");
+        if (StringUtils.isNotBlank(complexColumns) && StringUtils.isNotBlank(complexClassName)) {
+            return new ComplexShardingStrategyConfiguration(complexColumns, newAlgorithm(complexClassName, ComplexKeysShardingAlgorithm.class));
+        }
+
+        String hintClassName = getStringConfig(flatConfigMap, strategyPrefix + "hint.algorithm-class-name");
+        if (StringUtils.isNotBlank(hintClassName)) {
+            return new HintShardingStrategyConfiguration(newAlgorithm(hintClassName, HintShardingAlgorithm.class));
+        }
+        return null;
+    }
+
+    private <T> T newAlgorithm(String className, Class<T> algorithmType) {
+        try {
+            Class<?> clazz = Class.forName(className.trim());
+            if (!algorithmType.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException(className + " 没有实现 " + algorithmType.getSimpleName());
+            }
+            return algorithmType.cast(clazz.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("创建分片算法失败: " + className, e);
         }
     }
 
@@ -400,6 +589,39 @@ public class ShardingJDBCConfigRefresher{
         return dataSourceMap;
     }
 
+    /**
+     * 包装负载均衡算法为 EWMA_P2C 的主从规则中的从库数据源，统计每个从库的查询耗时和进行中的查询数
+     * 其他算法不读取这些统计，对应从库不包装，连接和语句不经过额外的代理
+     */
+    private void wrapSlaveDataSources(Map<String, DataSource> dataSourceMap, ShardingRuleConfiguration ruleConfig) {
+        if (!latencyTrackingEnabled) {
+            return;
+        }
+        for (MasterSlaveRuleConfiguration msConfig : ruleConfig.getMasterSlaveRuleConfigs()) {
+            LoadBalanceStrategyConfiguration loadBalanceConfig = msConfig.getLoadBalanceStrategyConfiguration();
+            if (loadBalanceConfig == null || !EwmaP2cLoadBalanceAlgorithm.TYPE.equalsIgnoreCase(loadBalanceConfig.getType())) {
+                continue;
+            }
+            for (String slaveName : msConfig.getSlaveDataSourceNames()) {
+                DataSource dataSource = dataSourceMap.get(slaveName);
+                if (dataSource != null && !(dataSource instanceof LatencyTrackingDataSource)) {
+                    dataSourceMap.put(slaveName, new LatencyTrackingDataSource(slaveName, dataSource));
+                    log.info("从库 {} 已包装查询耗时统计", slaveName);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出被包装的实际数据源（连接池）
+     */
+    private DataSource unwrapDataSource(DataSource dataSource) {
+        while (dataSource instanceof DelegatingDataSource) {
+            dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+        }
+        return dataSource;
+    }
+
     /**
      * 提取所有数据源名称：从 spring.shardingsphere.datasource.names 获得所有数据源信息
      */
@@ -465,6 +687,9 @@ public class ShardingJDBCConfigRefresher{
         // 3. 连接池配置（可选，无则用默认值）
         setPoolConfig(flatConfigMap, dsName, hikariConfig);
 
+        // 4. 记录获取连接耗时和超时次数，供 AdaptivePoolSizer 判断连接池压力
+        hikariConfig.setMetricsTrackerFactory(new PoolAcquireMetrics());
+
         return new HikariDataSource(hikariConfig);
     }
 
@@ -627,6 +852,7 @@ public class ShardingJDBCConfigRefresher{
      * 检查数据源是否已经被关闭
      */
     private boolean isDataSourceClosed(DataSource dataSource) {
+        dataSource = unwrapDataSource(dataSource);
         if (dataSource instanceof HikariDataSource) {
             return ((HikariDataSource) dataSource).isClosed();
         } else if (dataSource instanceof ShardingDataSource) {
@@ -636,7 +862,8 @@ public class ShardingJDBCConfigRefresher{
                 Map<String, DataSource> dataSourceMap = shardingDs.getDataSourceMap();
                 // ShardingDataSource 的 所有管理的DataSource都被关闭
                 if (dataSourceMap != null) {
-                    for (DataSource ds : dataSourceMap.values()) {
+                    for (DataSource wrapped : dataSourceMap.values()) {
+                        DataSource ds = unwrapDataSource(wrapped);
                         if (ds instanceof HikariDataSource && !((HikariDataSource) ds).isClosed()) {
                             return false;
                         }
@@ -659,6 +886,7 @@ public class ShardingJDBCConfigRefresher{
      * 检查数据源是否还有活跃连接
      */
     private boolean hasActiveConnections(DataSource dataSource) {
+        dataSource = unwrapDataSource(dataSource);
         if (dataSource instanceof HikariDataSource) {
             HikariDataSource hikariDs = (HikariDataSource) dataSource;
             if (hikariDs.isClosed()) {
@@ -825,6 +1053,7 @@ public class ShardingJDBCConfigRefresher{
         if (dataSource == null) {
             return;
         }
+        dataSource = unwrapDataSource(dataSource);
 
         try {
             if (dataSource instanceof HikariDataSource) {
@@ -875,14 +1104,16 @@ public class ShardingJDBCConfigRefresher{
         log.info("开始创建 ShardingDataSource，数据源数量: {}, 分片表数量: {}",
                 actualDataSources.size(), shardingRuleConfig.getTableRuleConfigs().size());
 
-        // 通用化属性配置：支持从 flatConfigMap 读取全局属性（如 sql.show）
+        // 通用化属性配置：spring.shardingsphere.props 下的全部属性，sql-show 这类写法转换为 sql.show
+        // 流式归并依赖 max.connections.size.per.query 不小于单库内的实际表数量，否则会退化为内存归并
         Properties props = new Properties();
-        String sqlShow = getStringConfig(flatConfigMap, "spring.shardingsphere.props.sql-show");
-        if (StringUtils.isNotBlank(sqlShow)) {
-            props.setProperty("sql.show", sqlShow);
-            log.debug("设置 sql.show 属性: {}", sqlShow);
-        }
-        // 可扩展：添加更多全局属性（如 executor.size 等）
+        flatConfigMap.forEach((key, value) -> {
+            if (key.startsWith(PROPS_PREFIX) && value != null && StringUtils.isNotBlank(value.toString())) {
+                String propKey = key.substring(PROPS_PREFIX.length()).replace('-', '.');
+                props.setProperty(propKey, value.toString().trim());
+                log.debug("设置 {} 属性: {}", propKey, value);
+            }
+        });
 
         DataSource shardingDataSource = ShardingDataSourceFactory.createDataSource(actualDataSources, shardingRuleConfig, props);
         log.info("ShardingDataSource 创建成功");
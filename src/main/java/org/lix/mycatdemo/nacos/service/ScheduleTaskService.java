@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.lix.mycatdemo.dao.OrderDO;
 import org.lix.mycatdemo.mapper.OrderMapper;
 import org.lix.mycatdemo.nacos.listener.ShardingJDBCListener;
+import org.lix.mycatdemo.service.cache.OrderNearCacheService;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
@@ -30,6 +31,12 @@ public class ScheduleTaskService {
     @Resource
     private ShardingJDBCListener shardingJDBCListener;
 
+    /**
+     * 写入需要带上用户生成分片基因主键，并维护二级索引和近端缓存
+     */
+    @Resource
+    private OrderNearCacheService orderNearCacheService;
+
     private ThreadPoolTaskScheduler taskScheduler;
 
     /**
@@ -211,7 +218,7 @@ public class ScheduleTaskService {
             orderDO.setUserId((long) (random.nextInt(10) + 1));
             
             long startTime = System.currentTimeMillis();
-            orderMapper.add(orderDO);
+            orderNearCacheService.add(orderDO);
             long duration = System.currentTimeMillis() - startTime;
             
             writeCount.incrementAndGet();
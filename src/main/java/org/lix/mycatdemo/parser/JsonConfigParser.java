@@ -1,17 +1,16 @@
 package org.lix.mycatdemo.parser;
 
-import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONReader;
 import com.alibaba.nacos.api.utils.StringUtils;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import org.apache.commons.collections4.MapUtils;
 
-import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Map;
 
 /**
  * fastjson 解析json配置文件
+ * XXX 基于 JSONReader 流式读取 token，直接扁平化写入结果，不再构建完整的 JSONObject
  */
 public class JsonConfigParser extends AbstractConfigParser {
 
@@ -34,60 +33,84 @@ public class JsonConfigParser extends AbstractConfigParser {
             return Maps.newHashMap();
         }
 
-        JSONObject jsonObject = JSONObject.parseObject(content);
         Map<String, Object> result = Maps.newHashMap();
-        flatMap(jsonObject, result, "");
-        if(StringUtils.isBlank(prefix)){
-            return result;
+        String filter = StringUtils.isBlank(prefix) ? null : prefix;
+        try (JSONReader reader = JSONReader.of(content)) {
+            if (!reader.nextIfObjectStart()) {
+                return result;
+            }
+            // 整个解析过程复用同一个 key 缓冲区，回溯时截断即可
+            flatObject(reader, new StringBuilder(64), result, filter);
         }
-        Map<String, Object> finalResult = result;
-        result = result.keySet()
-                .stream()
-                .filter(key -> key.startsWith(prefix))
-                .collect(Collectors.toMap(Function.identity(), k -> finalResult.get(k)));
         return result;
     }
 
     /***
-     * 扁平化Map
-     * @param dataMap 源Map结构
+     * 扁平化对象：调用时已消费 '{'
+     * @param reader 读取器
+     * @param key 当前层级的 key 缓冲区
      * @param result 扁平化Map
-     * @param prefix 前缀
+     * @param prefix 需要保留的前缀，null 表示全部保留
      */
-    private void flatMap(Map<String, Object> dataMap, Map<String, Object> result, String prefix) {
-        if (MapUtils.isEmpty(dataMap)) {
-            return;
-        }
-        dataMap.forEach((k, v) -> {
+    private void flatObject(JSONReader reader, StringBuilder key, Map<String, Object> result, String prefix) {
+        int mark = key.length();
+        while (!reader.nextIfObjectEnd()) {
             // 按照层级关系逐一构建键名
-            String fullKey = genFullKey(prefix, k);
-            if (v instanceof Map) {
-                flatMap((Map<String, Object>) v, result, fullKey);
-                return;
-            } else if (v instanceof Collection) {
-                int count = 0;
-                for (Object obj : (Collection<Object>) v) {
-                    String kk = "[" + (count++) + "]";
-                    flatMap(Collections.singletonMap(kk, obj), result, fullKey);
-                }
-                return;
+            String fieldName = reader.readFieldName();
+            if (mark > 0) {
+                key.append('.');
             }
+            key.append(fieldName);
+            flatValue(reader, key, result, prefix);
+            key.setLength(mark);
+        }
+    }
+
+    /***
+     * 扁平化数组：调用时已消费 '['，元素键名为 XX[0]、XX[1]
+     */
+    private void flatArray(JSONReader reader, StringBuilder key, Map<String, Object> result, String prefix) {
+        int mark = key.length();
+        int count = 0;
+        while (!reader.nextIfArrayEnd()) {
+            key.append('[').append(count++).append(']');
+            flatValue(reader, key, result, prefix);
+            key.setLength(mark);
+        }
+    }
 
-            result.put(fullKey, v);
-        });
+    private void flatValue(JSONReader reader, StringBuilder key, Map<String, Object> result, String prefix) {
+        // 提前剪枝：当前路径与前缀互不为前缀时，整个子树都不可能命中
+        if (prefix != null && !mayMatch(key, prefix)) {
+            reader.skipValue();
+            return;
+        }
+        if (reader.nextIfObjectStart()) {
+            flatObject(reader, key, result, prefix);
+        } else if (reader.nextIfArrayStart()) {
+            flatArray(reader, key, result, prefix);
+        } else {
+            Object value = reader.readAny();
+            if (prefix == null || startsWith(key, prefix)) {
+                result.put(key.toString(), value);
+            }
+        }
     }
 
     /**
-     * 处理 XX。XX.[1]的情况
-     * @param prefix 前缀
-     * @param key 值
-     * @return 完整key
+     * 当前路径是否可能产生以 prefix 开头的 key
      */
-    private String genFullKey(String prefix, String key) {
-        if (StringUtils.isBlank(prefix)) {
-            return key;
+    private boolean mayMatch(StringBuilder key, String prefix) {
+        int len = Math.min(key.length(), prefix.length());
+        for (int i = 0; i < len; i++) {
+            if (key.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return key.startsWith("[") ? prefix.concat(key) : prefix.concat(".").concat(key);
+    private boolean startsWith(StringBuilder key, String prefix) {
+        return key.length() >= prefix.length() && mayMatch(key, prefix);
     }
 }
@@ -5,17 +5,54 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
-import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
 
+import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * XXX SnakeYAML 的 Constructor 不是线程安全的，按线程复用；超大或恶意配置在解析过程中就被拒绝，避免撑爆堆
+ * 1. 长度超限直接拒绝，不进入解析
+ * 2. 嵌套深度和别名数量在 Composer 读取事件时校验，与加载是同一遍解析，超限时节点树还没有构建完
+ * 限制可通过 JVM 参数调整：
+ * -Dconfig.parser.yaml.max-code-points=3145728
+ * -Dconfig.parser.yaml.max-aliases=50
+ * -Dconfig.parser.yaml.max-nesting-depth=50
+ */
 @Slf4j
 public class YamlConfigParser extends AbstractConfigParser{
 
     private static final List<ConfigFileTypeEnum> CONFIG_TYPES = Lists.newArrayList(ConfigFileTypeEnum.YAML, ConfigFileTypeEnum.YML);
 
+    private static final int MAX_CODE_POINTS = Integer.getInteger("config.parser.yaml.max-code-points", 3 * 1024 * 1024);
+    private static final int MAX_ALIASES = Integer.getInteger("config.parser.yaml.max-aliases", 50);
+    private static final int MAX_NESTING_DEPTH = Integer.getInteger("config.parser.yaml.max-nesting-depth", 50);
+
+    /**
+     * 被拒绝解析的配置次数
+     */
+    private static final AtomicLong REJECTED_COUNT = new AtomicLong(0);
+
+    private static final LoaderOptions LOADER_OPTIONS = newLoaderOptions();
+
+    private static final ThreadLocal<Constructor> CONSTRUCTOR_HOLDER =
+            ThreadLocal.withInitial(() -> new Constructor(LOADER_OPTIONS));
+
+    private static final ThreadLocal<Resolver> RESOLVER_HOLDER = ThreadLocal.withInitial(Resolver::new);
+
     @Override
     public List<ConfigFileTypeEnum> types() {
         return CONFIG_TYPES;
@@ -27,8 +64,7 @@ public class YamlConfigParser extends AbstractConfigParser{
             return Maps.newHashMap();
         }
 
-        Yaml yaml = new Yaml();
-        Map<String, Object> map = yaml.loadAs(content, Map.class);
+        Map<String, Object> map = load(content);
         Map<String, Object> result = Maps.newHashMap();
         flatMap(map, result, "");
         if(StringUtils.isBlank(prefix)){
@@ -42,6 +78,80 @@ public class YamlConfigParser extends AbstractConfigParser{
         return result;
     }
 
+    /**
+     * 获得被拒绝解析的配置次数
+     */
+    public static long getRejectedCount() {
+        return REJECTED_COUNT.get();
+    }
+
+    private static LoaderOptions newLoaderOptions() {
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setMaxAliasesForCollections(MAX_ALIASES);
+        loaderOptions.setAllowRecursiveKeys(false);
+        return loaderOptions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> load(String content) {
+        if (content.length() > MAX_CODE_POINTS && content.codePointCount(0, content.length()) > MAX_CODE_POINTS) {
+            reject("配置长度 " + content.length() + " 超过上限 " + MAX_CODE_POINTS);
+        }
+        Parser parser = new LimitedParser(new ParserImpl(new StreamReader(new StringReader(content))));
+        Constructor constructor = CONSTRUCTOR_HOLDER.get();
+        constructor.setComposer(new Composer(parser, RESOLVER_HOLDER.get(), LOADER_OPTIONS));
+        return (Map<String, Object>) constructor.getSingleData(Map.class);
+    }
+
+    private static void reject(String reason) {
+        long rejected = REJECTED_COUNT.incrementAndGet();
+        log.warn("拒绝解析 YAML 配置：{}，累计拒绝次数：{}", reason, rejected);
+        throw new IllegalArgumentException("拒绝解析 YAML 配置：" + reason);
+    }
+
+    /**
+     * Composer 逐个取出事件时统计嵌套深度和别名数量，超限立即中止解析
+     */
+    private static class LimitedParser implements Parser {
+
+        private final Parser delegate;
+
+        private int depth;
+
+        private int aliases;
+
+        private LimitedParser(Parser delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean checkEvent(Event.ID choice) {
+            return delegate.checkEvent(choice);
+        }
+
+        @Override
+        public Event peekEvent() {
+            return delegate.peekEvent();
+        }
+
+        @Override
+        public Event getEvent() {
+            Event event = delegate.getEvent();
+            if (event instanceof CollectionStartEvent) {
+                if (++depth > MAX_NESTING_DEPTH) {
+                    reject("配置嵌套深度超过上限 " + MAX_NESTING_DEPTH);
+                }
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            } else if (event instanceof AliasEvent) {
+                if (++aliases > MAX_ALIASES) {
+                    reject("配置别名数量超过上限 " + MAX_ALIASES);
+                }
+            }
+            return event;
+        }
+    }
+
     /***
      * 扁平化Map
      * @param dataMap 源Map结构
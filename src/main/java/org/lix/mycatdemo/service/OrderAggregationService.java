@@ -0,0 +1,155 @@
+package org.lix.mycatdemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.service.dto.OrderAggregateResult;
+import org.lix.mycatdemo.service.dto.StatusAggregate;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * XXX 订单按状态聚合（scatter-gather）
+ * 通过 Sharding-JDBC 执行 GROUP BY 时，每个实际表的明细行都要拉回内存归并
+ * 这里把 GROUP BY status / COUNT / SUM 下推到每个实际表并行执行，应用内只合并每个分片的几行部分聚合
+ * 单个分片超过 shard-timeout-ms 未返回时放弃该分片，结果中 complete 为 false 并列出缺失的分片
+ */
+@Slf4j
+@Service
+public class OrderAggregationService {
+
+    private static final String LOGIC_TABLE = "t_order";
+
+    @Value("${order.aggregate.shard-timeout-ms:2000}")
+    private long shardTimeoutMs;
+
+    @Value("${order.aggregate.parallelism:8}")
+    private int parallelism;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    private ExecutorService aggregateExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger(0);
+        aggregateExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "order-shard-aggregate-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        aggregateExecutor.shutdownNow();
+    }
+
+    /**
+     * 按订单状态统计订单数和金额
+     * @param userId 用户过滤条件，可以为 null
+     * @return 合并后的聚合结果
+     */
+    public OrderAggregateResult aggregateByStatus(Long userId) {
+        long start = System.currentTimeMillis();
+        Map<String, Comparable<?>> shardingValues = new HashMap<>(2);
+        if (userId != null) {
+            shardingValues.put("user_id", userId);
+        }
+        List<DataNode> dataNodes = shardingRuntime.routeAll(LOGIC_TABLE, shardingValues);
+        boolean fromMaster = readYourWritesTracker.isPinned(userId);
+
+        Map<DataNode, Future<List<StatusAggregate>>> futures = new LinkedHashMap<>();
+        for (DataNode dataNode : dataNodes) {
+            futures.put(dataNode, aggregateExecutor.submit(() -> aggregateNode(dataNode, userId, fromMaster)));
+        }
+
+        // 所有分片共用同一个截止时间，总耗时不超过 shard-timeout-ms
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shardTimeoutMs);
+        Map<String, StatusAggregate> merged = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        List<String> failedShards = new ArrayList<>();
+        for (Map.Entry<DataNode, Future<List<StatusAggregate>>> entry : futures.entrySet()) {
+            String nodeName = entry.getKey().getDataSourceName() + "." + entry.getKey().getTableName();
+            try {
+                List<StatusAggregate> partials = entry.getValue()
+                        .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                for (StatusAggregate partial : partials) {
+                    merged.computeIfAbsent(partial.getStatus(), status -> {
+                        StatusAggregate aggregate = new StatusAggregate();
+                        aggregate.setStatus(status);
+                        return aggregate;
+                    }).merge(partial.getOrderCount(), partial.getRevenue());
+                }
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                failedShards.add(nodeName);
+                log.warn("分片聚合超时，放弃该分片: {}", nodeName);
+            } catch (ExecutionException e) {
+                failedShards.add(nodeName);
+                log.warn("分片聚合失败: {}", nodeName, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.getValue().cancel(true);
+                failedShards.add(nodeName);
+            }
+        }
+
+        OrderAggregateResult result = new OrderAggregateResult();
+        result.setGroups(new ArrayList<>(merged.values()));
+        result.setTotalShards(dataNodes.size());
+        result.setFailedShards(failedShards);
+        result.setComplete(failedShards.isEmpty());
+        result.setCostMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private List<StatusAggregate> aggregateNode(DataNode dataNode, Long userId, boolean fromMaster) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT status, COUNT(*) AS order_count, SUM(price) AS revenue FROM ")
+                .append(dataNode.getTableName());
+        if (userId != null) {
+            sql.append(" WHERE user_id = ?");
+        }
+        sql.append(" GROUP BY status");
+
+        List<StatusAggregate> partials = new ArrayList<>();
+        DataSource dataSource = fromMaster
+                ? shardingRuntime.getWriteDataSource(dataNode.getDataSourceName())
+                : shardingRuntime.getReadDataSource(dataNode.getDataSourceName());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            // 超时放弃后让数据库也停止执行，避免慢查询继续占用连接
+            ps.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(shardTimeoutMs + 999)));
+            if (userId != null) {
+                ps.setLong(1, userId);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    StatusAggregate partial = new StatusAggregate();
+                    partial.setStatus(rs.getString("status"));
+                    BigDecimal revenue = rs.getBigDecimal("revenue");
+                    partial.merge(rs.getLong("order_count"), revenue);
+                    partials.add(partial);
+                }
+            }
+        }
+        return partials;
+    }
+}
@@ -0,0 +1,155 @@
+package org.lix.mycatdemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.service.dto.BatchCreateResult;
+import org.lix.mycatdemo.service.dto.ShardWriteResult;
+import org.lix.mycatdemo.service.index.OrderIndexService;
+import org.lix.mycatdemo.sharding.ShardGene;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 批量创建订单
+ * 1. 先生成主键，再按分片规则把订单分组到实际数据节点
+ * 2. 每个节点交给 OrderShardWriter 在写库上用一个事务批量写入
+ * 3. 各节点并行写入，返回每个节点的行数和耗时
+ * 4. 节点写入成功后维护全局二级索引
+ */
+@Slf4j
+@Service
+public class OrderBatchService {
+
+    private static final String LOGIC_TABLE = "t_order";
+
+    /**
+     * 单次请求最多创建的订单数
+     */
+    @Value("${order.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    /**
+     * 并行写入的分片数
+     */
+    @Value("${order.batch.parallelism:8}")
+    private int parallelism;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private OrderShardWriter orderShardWriter;
+
+    @Resource
+    private OrderIndexService orderIndexService;
+
+    private ExecutorService shardWriteExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger(0);
+        shardWriteExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(1024), r -> {
+            Thread t = new Thread(r, "order-shard-writer-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        shardWriteExecutor.shutdown();
+    }
+
+    /**
+     * 批量创建订单，未指定 orderId 的订单使用 t_order 配置的主键生成器生成，指定的 orderId 必须带有 userId 的分片基因
+     * @param orders 订单
+     * @return 每个分片的写入结果
+     */
+    public BatchCreateResult createOrders(List<OrderDO> orders) {
+        if (orders == null || orders.isEmpty()) {
+            throw new BusinessException("订单列表不能为空");
+        }
+        if (orders.size() > maxBatchSize) {
+            throw new BusinessException("单次最多创建 " + maxBatchSize + " 条订单，当前: " + orders.size());
+        }
+
+        long start = System.currentTimeMillis();
+        Map<DataNode, List<OrderDO>> ordersByNode = groupByDataNode(orders);
+        long routeMillis = System.currentTimeMillis() - start;
+
+        List<CompletableFuture<ShardWriteResult>> futures = ordersByNode.entrySet().stream()
+                .map(entry -> CompletableFuture.supplyAsync(() -> writeShard(entry.getKey(), entry.getValue()), shardWriteExecutor))
+                .collect(Collectors.toList());
+        List<ShardWriteResult> shardResults = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+
+        BatchCreateResult result = new BatchCreateResult();
+        result.setShards(shardResults);
+        result.setRouteMillis(routeMillis);
+        result.setTotalRows(shardResults.stream().mapToInt(ShardWriteResult::getRows).sum());
+        result.setSuccess(shardResults.stream().allMatch(ShardWriteResult::isSuccess));
+        result.setCostMillis(System.currentTimeMillis() - start);
+        log.info("批量创建订单完成：{} 条，{} 个分片，路由耗时 {} ms，总耗时 {} ms",
+                result.getTotalRows(), shardResults.size(), routeMillis, result.getCostMillis());
+        return result;
+    }
+
+    /**
+     * 生成主键并按实际数据节点分组
+     */
+    private Map<DataNode, List<OrderDO>> groupByDataNode(List<OrderDO> orders) {
+        Map<DataNode, List<OrderDO>> ordersByNode = new LinkedHashMap<>();
+        Map<String, Comparable<?>> shardingValues = new HashMap<>(4);
+        for (OrderDO order : orders) {
+            if (order.getUserId() == null) {
+                throw new BusinessException("订单缺少 userId");
+            }
+            if (order.getOrderId() == null) {
+                order.setOrderId(((Number) shardingRuntime.generateKey(LOGIC_TABLE, order.getUserId())).longValue());
+            } else if (!ShardGene.sameGene(order.getOrderId(), order.getUserId())) {
+                throw new BusinessException("订单 orderId 与 userId 分片基因不一致: " + order.getOrderId());
+            }
+            shardingValues.put("order_id", order.getOrderId());
+            shardingValues.put("user_id", order.getUserId());
+            DataNode dataNode = shardingRuntime.route(LOGIC_TABLE, shardingValues);
+            ordersByNode.computeIfAbsent(dataNode, k -> new ArrayList<>()).add(order);
+        }
+        return ordersByNode;
+    }
+
+    private ShardWriteResult writeShard(DataNode dataNode, List<OrderDO> orders) {
+        long start = System.currentTimeMillis();
+        ShardWriteResult result = new ShardWriteResult();
+        result.setDataNode(dataNode.getDataSourceName() + "." + dataNode.getTableName());
+        result.setOrderIds(orders.stream().map(OrderDO::getOrderId).collect(Collectors.toList()));
+        try {
+            result.setDataSource(shardingRuntime.getWriteDataSourceName(dataNode.getDataSourceName()));
+            result.setRows(orderShardWriter.write(dataNode, orders, false));
+            result.setSuccess(true);
+            orderIndexService.index(dataNode, orders);
+        } catch (Exception e) {
+            log.error("分片 {} 批量写入失败，{} 条订单已回滚", result.getDataNode(), orders.size(), e);
+            result.setSuccess(false);
+            result.setError(e.getMessage());
+        }
+        result.setCostMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+}
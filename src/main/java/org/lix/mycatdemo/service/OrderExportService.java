@@ -0,0 +1,158 @@
+package org.lix.mycatdemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.service.dto.ExportFormat;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * XXX 订单流式导出
+ * 1. 经过分片数据源执行逻辑 SQL，fetchSize = Integer.MIN_VALUE 让每个分片的 MySQL 结果集逐行读取，由 Sharding-JDBC 流式归并
+ * 2. 每读一行立即写入输出流，不构建 List，内存占用与结果集大小无关
+ * 3. 输出流写满时阻塞读取，客户端读得慢，数据库端也随之读得慢（背压）
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+
+    private static final String EXPORT_SQL = "SELECT order_id, price, user_id, status FROM t_order";
+
+    private static final String CSV_HEADER = "order_id,price,user_id,status";
+
+    /**
+     * 每写出多少行 flush 一次，让客户端尽早收到数据
+     */
+    @Value("${order.export.flush-rows:1000}")
+    private int flushRows;
+
+    @Value("${order.export.buffer-bytes:65536}")
+    private int bufferBytes;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    /**
+     * 导出订单到输出流
+     * @param userId 用户过滤条件，可以为 null
+     * @param format 导出格式
+     * @param out 输出流，由调用方关闭
+     * @return 导出的行数
+     */
+    public long export(Long userId, ExportFormat format, OutputStream out) throws SQLException, IOException {
+        String sql = userId == null ? EXPORT_SQL + " ORDER BY order_id" : EXPORT_SQL + " WHERE user_id = ? ORDER BY order_id";
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferBytes);
+        try (Connection connection = shardingRuntime.getShardingDataSource().getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            if (userId != null) {
+                ps.setLong(1, userId);
+            }
+            if (format == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(writer, rs);
+                    } else {
+                        writeJson(writer, rs);
+                    }
+                    if (++rows % flushRows == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+        } finally {
+            writer.flush();
+        }
+        log.info("订单导出完成：格式 {}，{} 行，耗时 {} ms", format, rows, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private void writeCsv(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write(Long.toString(rs.getLong(1)));
+        writer.write(',');
+        writeDecimal(writer, rs.getBigDecimal(2));
+        writer.write(',');
+        writer.write(Long.toString(rs.getLong(3)));
+        writer.write(',');
+        String status = rs.getString(4);
+        if (status != null) {
+            if (status.indexOf(',') >= 0 || status.indexOf('"') >= 0 || status.indexOf('\n') >= 0) {
+                writer.write('"');
+                writer.write(status.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(status);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private void writeJson(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write("{\"orderId\":");
+        writer.write(Long.toString(rs.getLong(1)));
+        writer.write(",\"price\":");
+        BigDecimal price = rs.getBigDecimal(2);
+        writer.write(price == null ? "null" : price.toPlainString());
+        writer.write(",\"userId\":");
+        writer.write(Long.toString(rs.getLong(3)));
+        writer.write(",\"status\":");
+        writeJsonString(writer, rs.getString(4));
+        writer.write("}\n");
+    }
+
+    private void writeDecimal(Writer writer, BigDecimal value) throws IOException {
+        if (value != null) {
+            writer.write(value.toPlainString());
+        }
+    }
+
+    private void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,281 @@
+package org.lix.mycatdemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.service.dto.OrderPage;
+import org.lix.mycatdemo.service.dto.OrderSortKey;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.lix.mycatdemo.sharding.loadbalance.HedgedReadExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 跨分片游标分页
+ * LIMIT offset, n 在每个分片上都要扫描 offset + n 行，越往后越慢
+ * 这里用上一页最后一条的 (排序值, order_id) 作为游标，每个实际表只取 WHERE key > 游标 ORDER BY key LIMIT n + 1，
+ * 再用大小为分片数的小顶堆做 k 路归并，任意深度的翻页代价都相同
+ */
+@Slf4j
+@Service
+public class OrderQueryService {
+
+    private static final String LOGIC_TABLE = "t_order";
+
+    private static final String SELECT_COLUMNS = "SELECT order_id, price, user_id, status FROM ";
+
+    @Value("${order.query.max-page-size:500}")
+    private int maxPageSize;
+
+    @Value("${order.query.parallelism:8}")
+    private int parallelism;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Resource
+    private HedgedReadExecutor hedgedReadExecutor;
+
+    private ExecutorService queryExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger(0);
+        queryExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "order-shard-query-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        queryExecutor.shutdown();
+    }
+
+    /**
+     * 按游标查询一页订单
+     * @param userId 用户过滤条件，可以为 null
+     * @param sortKey 排序键
+     * @param pageSize 每页条数
+     * @param token 上一页返回的游标，第一页为 null
+     * @return 一页订单及下一页游标
+     */
+    public OrderPage listOrders(Long userId, OrderSortKey sortKey, int pageSize, String token) {
+        if (pageSize <= 0 || pageSize > maxPageSize) {
+            throw new BusinessException("每页条数需在 1 到 " + maxPageSize + " 之间");
+        }
+        Cursor cursor = token == null || token.isEmpty() ? null : Cursor.decode(token, sortKey);
+
+        Map<String, Comparable<?>> shardingValues = new HashMap<>(2);
+        if (userId != null) {
+            shardingValues.put("user_id", userId);
+        }
+        List<DataNode> dataNodes = shardingRuntime.routeAll(LOGIC_TABLE, shardingValues);
+        // 在调用线程判断写后读窗口，分片查询线程上没有请求用户
+        boolean fromMaster = readYourWritesTracker.isPinned(userId);
+
+        // 每个实际表多取一条，用来判断是否还有下一页
+        List<CompletableFuture<List<OrderDO>>> futures = dataNodes.stream()
+                .map(dataNode -> CompletableFuture.supplyAsync(
+                        () -> queryNode(dataNode, userId, sortKey, cursor, pageSize + 1, fromMaster), queryExecutor))
+                .collect(Collectors.toList());
+        List<List<OrderDO>> shardResults = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<List<OrderDO>> future : futures) {
+                shardResults.add(future.join());
+            }
+        } catch (CompletionException e) {
+            throw new BusinessException("分片查询失败: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        return merge(shardResults, sortKey, pageSize);
+    }
+
+    /**
+     * k 路归并：堆中只保存每个分片当前的第一条
+     */
+    private OrderPage merge(List<List<OrderDO>> shardResults, OrderSortKey sortKey, int pageSize) {
+        Comparator<OrderDO> comparator = sortKey.comparator();
+        PriorityQueue<ShardCursor> heap = new PriorityQueue<>(Math.max(1, shardResults.size()),
+                (a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<OrderDO> rows : shardResults) {
+            if (!rows.isEmpty()) {
+                heap.add(new ShardCursor(rows));
+            }
+        }
+
+        List<OrderDO> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && !heap.isEmpty()) {
+            ShardCursor head = heap.poll();
+            page.add(head.current());
+            if (head.advance()) {
+                heap.add(head);
+            }
+        }
+        String nextToken = heap.isEmpty() || page.isEmpty()
+                ? null
+                : new Cursor(sortKey, page.get(page.size() - 1)).encode();
+        return new OrderPage(page, nextToken);
+    }
+
+    private List<OrderDO> queryNode(DataNode dataNode, Long userId, OrderSortKey sortKey, Cursor cursor, int limit,
+                                    boolean fromMaster) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(dataNode.getTableName());
+        List<Object> parameters = new ArrayList<>(5);
+        List<String> conditions = new ArrayList<>(2);
+        if (userId != null) {
+            conditions.add("user_id = ?");
+            parameters.add(userId);
+        }
+        if (cursor != null) {
+            if (sortKey.getValueGetter() == null) {
+                conditions.add("order_id > ?");
+                parameters.add(cursor.orderId);
+            } else {
+                conditions.add("(" + sortKey.getColumn() + " > ? OR (" + sortKey.getColumn() + " = ? AND order_id > ?))");
+                parameters.add(cursor.value);
+                parameters.add(cursor.value);
+                parameters.add(cursor.orderId);
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ");
+        if (sortKey.getValueGetter() != null) {
+            sql.append(sortKey.getColumn()).append(", ");
+        }
+        sql.append("order_id LIMIT ?");
+        parameters.add(limit);
+
+        PreparedStatementSetter setter = ps -> {
+            for (int i = 0; i < parameters.size(); i++) {
+                ps.setObject(i + 1, parameters.get(i));
+            }
+        };
+        ResultSetExtractor<List<OrderDO>> extractor = rs -> {
+            List<OrderDO> rows = new ArrayList<>(limit);
+            while (rs.next()) {
+                rows.add(mapRow(rs));
+            }
+            return rows;
+        };
+        try {
+            if (!fromMaster) {
+                // 从库查询可以对冲到另一个从库
+                return hedgedReadExecutor.query(dataNode.getDataSourceName(), sql.toString(), setter, extractor);
+            }
+            try (Connection connection = shardingRuntime.getWriteDataSource(dataNode.getDataSourceName()).getConnection();
+                 PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+                setter.setValues(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return extractor.extractData(rs);
+                }
+            }
+        } catch (SQLException e) {
+            throw new CompletionException(new BusinessException(
+                    "查询 " + dataNode.getDataSourceName() + "." + dataNode.getTableName() + " 失败: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * 按列名映射 order_id, price, user_id, status
+     */
+    public static OrderDO mapRow(ResultSet rs) throws SQLException {
+        OrderDO order = new OrderDO();
+        order.setOrderId(rs.getLong("order_id"));
+        order.setPrice(rs.getBigDecimal("price"));
+        order.setUserId(rs.getLong("user_id"));
+        order.setStatus(rs.getString("status"));
+        return order;
+    }
+
+    private static class ShardCursor {
+
+        private final List<OrderDO> rows;
+
+        private int position;
+
+        private ShardCursor(List<OrderDO> rows) {
+            this.rows = rows;
+        }
+
+        private OrderDO current() {
+            return rows.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < rows.size();
+        }
+    }
+
+    /**
+     * 游标：排序键:排序值:order_id，Base64 编码后对调用方不透明
+     */
+    private static class Cursor {
+
+        private final OrderSortKey sortKey;
+
+        private final BigDecimal value;
+
+        private final long orderId;
+
+        private Cursor(OrderSortKey sortKey, OrderDO last) {
+            this.sortKey = sortKey;
+            this.value = sortKey.getValueGetter() == null ? null : sortKey.getValueGetter().apply(last);
+            this.orderId = last.getOrderId();
+        }
+
+        private Cursor(OrderSortKey sortKey, BigDecimal value, long orderId) {
+            this.sortKey = sortKey;
+            this.value = value;
+            this.orderId = orderId;
+        }
+
+        private String encode() {
+            String raw = sortKey.name() + ":" + (value == null ? "" : value.toPlainString()) + ":" + orderId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String token, OrderSortKey sortKey) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", -1);
+                if (parts.length != 3 || !sortKey.name().equals(parts[0])) {
+                    throw new BusinessException("分页游标与排序键不匹配");
+                }
+                BigDecimal value = parts[1].isEmpty() ? null : new BigDecimal(parts[1]);
+                if (sortKey.getValueGetter() != null && value == null) {
+                    throw new BusinessException("分页游标缺少排序值");
+                }
+                return new Cursor(sortKey, value, Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException("非法的分页游标", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.lix.mycatdemo.service;
+
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 直接在实际数据节点的写库上批量写入订单：一个连接、一个事务、JDBC batch
+ * 配合 rewriteBatchedStatements=true，驱动会把 batch 合并为多行 INSERT
+ */
+@Component
+public class OrderShardWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO %s (order_id, price, user_id, status) VALUES (?, ?, ?, ?)";
+
+    /**
+     * 按 order_id 幂等：主键已存在时不做任何修改，影响行数为 0
+     */
+    private static final String IDEMPOTENT_INSERT_SQL = INSERT_SQL + " ON DUPLICATE KEY UPDATE order_id = order_id";
+
+    /**
+     * 每执行一次 executeBatch 提交的行数
+     */
+    @Value("${order.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    /**
+     * 写入一个实际数据节点
+     * @param dataNode 实际数据节点
+     * @param orders 已生成主键的订单
+     * @param idempotent 是否忽略已存在的 order_id
+     * @return 实际插入的行数
+     */
+    public int write(DataNode dataNode, List<OrderDO> orders, boolean idempotent) throws SQLException {
+        String sql = String.format(idempotent ? IDEMPOTENT_INSERT_SQL : INSERT_SQL, dataNode.getTableName());
+        try (Connection connection = shardingRuntime.getWriteDataSource(dataNode.getDataSourceName()).getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                int rows = 0;
+                int pending = 0;
+                for (OrderDO order : orders) {
+                    ps.setLong(1, order.getOrderId());
+                    ps.setBigDecimal(2, order.getPrice());
+                    ps.setLong(3, order.getUserId());
+                    ps.setString(4, order.getStatus());
+                    ps.addBatch();
+                    if (++pending == chunkSize) {
+                        rows += countRows(ps.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    rows += countRows(ps.executeBatch());
+                }
+                connection.commit();
+                orders.forEach(order -> readYourWritesTracker.markWrite(order.getUserId()));
+                return rows;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * rewriteBatchedStatements 合并后驱动可能返回 SUCCESS_NO_INFO，按一行计
+     */
+    private int countRows(int[] updateCounts) {
+        int rows = 0;
+        for (int count : updateCounts) {
+            rows += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,239 @@
+package org.lix.mycatdemo.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.service.OrderQueryService;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.lix.mycatdemo.sharding.loadbalance.HedgedReadExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * XXX 订单点查的微批量合并（DataLoader 模式）
+ * 1. 并发的单条查询先进入当前窗口，相同 order_id 共享同一个 future
+ * 2. 窗口到期（window-micros）或攒够 max-batch-size 个 order_id 时统一发出
+ * 3. 按分片基因路由到实际表，每个实际表只发一条 WHERE order_id IN (...)（开启对冲读时可能在第二个从库上重发），再逐个完成调用方的 future
+ * 数据库往返次数随实际表数量增长，而不是随请求数量增长
+ */
+@Slf4j
+@Component
+public class OrderBatchLoader {
+
+    private static final String LOGIC_TABLE = "t_order";
+
+    private static final String SELECT_COLUMNS = "SELECT order_id, price, user_id, status FROM ";
+
+    @Value("${order.loader.window-micros:1000}")
+    private long windowMicros;
+
+    @Value("${order.loader.max-batch-size:256}")
+    private int maxBatchSize;
+
+    @Value("${order.loader.parallelism:8}")
+    private int parallelism;
+
+    /**
+     * 调用方等待结果的上限
+     */
+    @Value("${order.loader.timeout-ms:3000}")
+    private long timeoutMs;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private HedgedReadExecutor hedgedReadExecutor;
+
+    private final Object lock = new Object();
+
+    /**
+     * 当前窗口内待查询的 order_id，受 lock 保护
+     */
+    private Map<Long, CompletableFuture<OrderDO>> pending = new HashMap<>();
+
+    /**
+     * 当前窗口是否已经安排了定时发送，受 lock 保护
+     */
+    private boolean scheduled;
+
+    private ScheduledExecutorService timer;
+
+    private ExecutorService queryExecutor;
+
+    private final AtomicLong requestCount = new AtomicLong(0);
+    private final AtomicLong deduplicatedCount = new AtomicLong(0);
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong queryCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-batch-loader-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger index = new AtomicInteger(0);
+        queryExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "order-batch-loader-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.shutdownNow();
+        queryExecutor.shutdown();
+    }
+
+    /**
+     * 异步查询单个订单
+     * @return 订单不存在时以 null 完成
+     */
+    public CompletableFuture<OrderDO> load(long orderId) {
+        requestCount.incrementAndGet();
+        CompletableFuture<OrderDO> future;
+        boolean flushNow = false;
+        synchronized (lock) {
+            future = pending.get(orderId);
+            if (future != null) {
+                deduplicatedCount.incrementAndGet();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(orderId, future);
+            if (pending.size() >= maxBatchSize) {
+                flushNow = true;
+            } else if (!scheduled) {
+                scheduled = true;
+                timer.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (flushNow) {
+            queryExecutor.execute(this::flush);
+        }
+        return future;
+    }
+
+    /**
+     * 同步查询单个订单
+     * @return 订单不存在时返回 null
+     */
+    public OrderDO get(long orderId) {
+        try {
+            return load(orderId).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("查询订单被中断", e);
+        } catch (ExecutionException e) {
+            throw new BusinessException("查询订单失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new BusinessException("查询订单超时: " + orderId, e);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("requestCount", requestCount.get());
+        statistics.put("deduplicatedCount", deduplicatedCount.get());
+        statistics.put("batchCount", batchCount.get());
+        statistics.put("queryCount", queryCount.get());
+        statistics.put("failedCount", failedCount.get());
+        synchronized (lock) {
+            statistics.put("pending", pending.size());
+        }
+        return statistics;
+    }
+
+    /**
+     * 取走当前窗口并按实际表分组发出查询
+     * 过期的定时任务可能提前发出下一个窗口，只会让该窗口变小，不影响正确性
+     */
+    private void flush() {
+        Map<Long, CompletableFuture<OrderDO>> batch;
+        synchronized (lock) {
+            scheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        batchCount.incrementAndGet();
+
+        Map<DataNode, List<Long>> groups = new LinkedHashMap<>();
+        for (Map.Entry<Long, CompletableFuture<OrderDO>> entry : batch.entrySet()) {
+            try {
+                DataNode dataNode = shardingRuntime.route(LOGIC_TABLE,
+                        Collections.<String, Comparable<?>>singletonMap("order_id", entry.getKey()));
+                groups.computeIfAbsent(dataNode, k -> new ArrayList<>()).add(entry.getKey());
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                entry.getValue().completeExceptionally(e);
+            }
+        }
+        for (Map.Entry<DataNode, List<Long>> group : groups.entrySet()) {
+            try {
+                queryExecutor.execute(() -> queryNode(group.getKey(), group.getValue(), batch));
+            } catch (RejectedExecutionException e) {
+                complete(group.getValue(), batch, Collections.emptyMap(), e);
+            }
+        }
+    }
+
+    private void queryNode(DataNode dataNode, List<Long> orderIds, Map<Long, CompletableFuture<OrderDO>> batch) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(dataNode.getTableName()).append(" WHERE order_id IN (");
+        for (int i = 0; i < orderIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        queryCount.incrementAndGet();
+        Map<Long, OrderDO> found;
+        try {
+            found = hedgedReadExecutor.query(dataNode.getDataSourceName(), sql.toString(), ps -> {
+                for (int i = 0; i < orderIds.size(); i++) {
+                    ps.setLong(i + 1, orderIds.get(i));
+                }
+            }, rs -> {
+                Map<Long, OrderDO> rows = new HashMap<>(orderIds.size() * 2);
+                while (rs.next()) {
+                    OrderDO order = OrderQueryService.mapRow(rs);
+                    rows.put(order.getOrderId(), order);
+                }
+                return rows;
+            });
+        } catch (SQLException | RuntimeException e) {
+            log.warn("批量查询订单失败, 实际表: {}.{}, 订单数: {}",
+                    dataNode.getDataSourceName(), dataNode.getTableName(), orderIds.size(), e);
+            complete(orderIds, batch, Collections.emptyMap(), e);
+            return;
+        }
+        complete(orderIds, batch, found, null);
+    }
+
+    private void complete(List<Long> orderIds, Map<Long, CompletableFuture<OrderDO>> batch,
+                          Map<Long, OrderDO> found, Exception error) {
+        for (Long orderId : orderIds) {
+            CompletableFuture<OrderDO> future = batch.get(orderId);
+            if (error == null) {
+                future.complete(found.get(orderId));
+            } else {
+                failedCount.incrementAndGet();
+                future.completeExceptionally(error);
+            }
+        }
+    }
+}
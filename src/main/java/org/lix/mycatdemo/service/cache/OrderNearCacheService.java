@@ -0,0 +1,336 @@
+package org.lix.mycatdemo.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.mapper.OrderMapper;
+import org.lix.mycatdemo.service.index.OrderIndexService;
+import org.lix.mycatdemo.sharding.ShardGene;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 订单读写入口，可选的进程内近端缓存
+ * 1. 按 order_id 的点查先查缓存，未命中时单条查询经 OrderBatchLoader 合并回源，批量查询通过 OrderMapper 回源
+ * 2. 容量有上限，按访问频率淘汰（Caffeine W-TinyLFU）；每条记录按订单状态设置过期时间
+ * 3. 通过本服务新增、修改订单时失效对应缓存；失效后 invalidation-window-ms 内从库可能还没追上，
+ *    这段时间内的读直接查主库且不放入缓存，避免把从库上的旧状态按该状态的过期时间缓存下来
+ * 4. 定期和停机时把最热的 order_id 落盘，启动时异步预热
+ * order.near-cache.enabled=false 时所有读请求直接回源
+ */
+@Slf4j
+@Service
+public class OrderNearCacheService {
+
+    @Value("${order.near-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.near-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${order.near-cache.default-ttl-ms:5000}")
+    private long defaultTtlMs;
+
+    /**
+     * 按订单状态覆盖过期时间，格式：状态:毫秒，逗号分隔，如 init:1000,finished:300000
+     */
+    @Value("${order.near-cache.status-ttl-ms:}")
+    private String statusTtlMs;
+
+    @Value("${order.near-cache.hot-keys-file:${user.home}/.sharding-jdbc-demo/order-hot-keys.txt}")
+    private String hotKeysFile;
+
+    /**
+     * 落盘的热点 order_id 数量
+     */
+    @Value("${order.near-cache.hot-keys-size:10000}")
+    private int hotKeysSize;
+
+    @Value("${order.near-cache.warmup-batch-size:500}")
+    private int warmupBatchSize;
+
+    /**
+     * 失效后直接读主库的时间，应不小于从库的复制延迟
+     */
+    @Value("${order.near-cache.invalidation-window-ms:2000}")
+    private long invalidationWindowMs;
+
+    @Resource
+    private OrderMapper orderMapper;
+
+    @Resource
+    private OrderIndexService orderIndexService;
+
+    @Resource
+    private OrderBatchLoader orderBatchLoader;
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    private final Map<String, Long> ttlByStatus = new HashMap<>();
+
+    /**
+     * 未开启时为 null
+     */
+    private Cache<Long, OrderDO> cache;
+
+    /**
+     * 最近失效的 order_id → 失效序号，超过 invalidation-window-ms 自动过期；未开启时为 null
+     */
+    private Cache<Long, Long> recentlyInvalidated;
+
+    private final AtomicLong invalidationSequence = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("订单近端缓存未开启");
+            return;
+        }
+        for (String item : statusTtlMs.split(",")) {
+            int index = item.indexOf(':');
+            if (index > 0) {
+                ttlByStatus.put(item.substring(0, index).trim(), Long.parseLong(item.substring(index + 1).trim()));
+            }
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new StatusExpiry())
+                .recordStats()
+                .build();
+        recentlyInvalidated = Caffeine.newBuilder()
+                .expireAfterWrite(invalidationWindowMs, TimeUnit.MILLISECONDS)
+                .build();
+        log.info("订单近端缓存已开启，容量 {}，默认过期 {} ms，按状态过期 {}", maximumSize, defaultTtlMs, ttlByStatus);
+
+        Thread warmupThread = new Thread(this::warmup, "order-near-cache-warmup");
+        warmupThread.setDaemon(true);
+        warmupThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        persistHotKeys();
+    }
+
+    /**
+     * 按 order_id 查询订单
+     * @return 不存在时返回 null
+     */
+    public OrderDO getById(long orderId) {
+        if (readYourWritesTracker.isPinned(null)) {
+            // 写后读窗口内直接读主库，也不把结果放入缓存
+            List<OrderDO> orders = orderMapper.selectByOrderIdsFromMaster(Collections.singletonList(orderId));
+            return orders.isEmpty() ? null : orders.get(0);
+        }
+        if (cache == null) {
+            return orderBatchLoader.get(orderId);
+        }
+        if (recentlyInvalidated.getIfPresent(orderId) != null) {
+            return loadFromMaster(Collections.singletonList(orderId)).get(orderId);
+        }
+        // 回源和失效都按 key 串行：回源期间的 invalidate 会等回源结束后再删除，旧值不会留在缓存中
+        // 并发的单条回源由 OrderBatchLoader 合并成按实际表的批量查询
+        return cache.get(orderId, orderBatchLoader::get);
+    }
+
+    /**
+     * 按 order_id 批量查询，未命中的一次回源
+     */
+    public List<OrderDO> getByIds(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (cache == null) {
+            return orderMapper.selectByOrderIds(orderIds);
+        }
+        Set<Long> fromMaster = new HashSet<>();
+        List<Long> cacheable = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            (recentlyInvalidated.getIfPresent(orderId) != null ? fromMaster : cacheable).add(orderId);
+        }
+        // 批量回源不是按 key 原子的：回源期间被失效的 order_id 从缓存中移除，改读主库
+        long sequence = invalidationSequence.get();
+        Map<Long, OrderDO> result = new LinkedHashMap<>(cache.getAll(cacheable, this::load));
+        for (Long orderId : cacheable) {
+            Long invalidatedAt = recentlyInvalidated.getIfPresent(orderId);
+            if (invalidatedAt != null && invalidatedAt > sequence) {
+                cache.invalidate(orderId);
+                result.remove(orderId);
+                fromMaster.add(orderId);
+            }
+        }
+        if (!fromMaster.isEmpty()) {
+            result.putAll(loadFromMaster(fromMaster));
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * 新增订单，主键由 Sharding-JDBC 生成
+     * @return 生成的 order_id
+     */
+    public Long add(OrderDO order) {
+        if (order.getUserId() == null) {
+            throw new BusinessException("订单缺少 userId");
+        }
+        ShardGene.callWithUser(order.getUserId(), () -> orderMapper.add(order));
+        readYourWritesTracker.markWrite(order.getUserId());
+        orderIndexService.index(order);
+        invalidate(order.getOrderId());
+        return order.getOrderId();
+    }
+
+    /**
+     * 修改订单状态并同步维护二级索引
+     * @return 是否修改成功
+     */
+    public boolean updateStatus(long orderId, String status) {
+        List<OrderDO> orders = orderMapper.selectByOrderIdsFromMaster(Collections.singletonList(orderId));
+        if (orders.isEmpty()) {
+            return false;
+        }
+        boolean updated = orderMapper.updateStatus(orderId, status) > 0;
+        invalidate(orderId);
+        if (updated) {
+            OrderDO order = orders.get(0);
+            readYourWritesTracker.markWrite(order.getUserId());
+            order.setStatus(status);
+            orderIndexService.index(order);
+        }
+        return updated;
+    }
+
+    public void invalidate(Long orderId) {
+        if (cache != null && orderId != null) {
+            // 先记录再删除，之后开始的读都会走主库
+            recentlyInvalidated.put(orderId, invalidationSequence.incrementAndGet());
+            cache.invalidate(orderId);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", cache != null);
+        if (cache == null) {
+            return statistics;
+        }
+        CacheStats stats = cache.stats();
+        statistics.put("size", cache.estimatedSize());
+        statistics.put("hitCount", stats.hitCount());
+        statistics.put("missCount", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("evictionCount", stats.evictionCount());
+        statistics.put("loadSuccessCount", stats.loadSuccessCount());
+        statistics.put("loadFailureCount", stats.loadFailureCount());
+        statistics.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return statistics;
+    }
+
+    /**
+     * 定期落盘热点 order_id，进程被强制杀掉时也能保留较新的热点列表
+     */
+    @Scheduled(initialDelayString = "${order.near-cache.hot-keys-persist-interval-ms:300000}",
+            fixedDelayString = "${order.near-cache.hot-keys-persist-interval-ms:300000}")
+    public void persistHotKeys() {
+        if (cache == null) {
+            return;
+        }
+        List<Long> hotKeys = cache.policy().eviction()
+                .map(eviction -> new ArrayList<>(eviction.hottest(hotKeysSize).keySet()))
+                .orElseGet(ArrayList::new);
+        Path path = Paths.get(hotKeysFile);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Long orderId : hotKeys) {
+                    writer.write(orderId.toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("已落盘 {} 个热点订单", hotKeys.size());
+        } catch (IOException e) {
+            log.warn("落盘热点订单失败: {}", path, e);
+        }
+    }
+
+    private Map<Long, OrderDO> load(Iterable<? extends Long> orderIds) {
+        List<Long> ids = new ArrayList<>();
+        orderIds.forEach(ids::add);
+        return orderMapper.selectByOrderIds(ids).stream()
+                .collect(Collectors.toMap(OrderDO::getOrderId, order -> order, (a, b) -> a));
+    }
+
+    private Map<Long, OrderDO> loadFromMaster(Collection<Long> orderIds) {
+        return orderMapper.selectByOrderIdsFromMaster(orderIds).stream()
+                .collect(Collectors.toMap(OrderDO::getOrderId, order -> order, (a, b) -> a));
+    }
+
+    private void warmup() {
+        Path path = Paths.get(hotKeysFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        try {
+            List<Long> hotKeys = Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .map(Long::parseLong)
+                    .collect(Collectors.toList());
+            for (int i = 0; i < hotKeys.size(); i += warmupBatchSize) {
+                loaded += getByIds(hotKeys.subList(i, Math.min(hotKeys.size(), i + warmupBatchSize))).size();
+            }
+            log.info("订单近端缓存预热完成：{} 个热点，加载 {} 条，耗时 {} ms", hotKeys.size(), loaded, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("订单近端缓存预热失败，已加载 {} 条", loaded, e);
+        }
+    }
+
+    /**
+     * 按订单状态设置过期时间，读取不延长过期时间
+     */
+    private class StatusExpiry implements Expiry<Long, OrderDO> {
+
+        @Override
+        public long expireAfterCreate(Long key, OrderDO value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(ttlByStatus.getOrDefault(value.getStatus(), defaultTtlMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, OrderDO value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, OrderDO value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量创建订单的结果：每个分片单独提交事务，部分分片失败时 success 为 false
+ */
+@Data
+public class BatchCreateResult {
+
+    private int totalRows;
+
+    private long costMillis;
+
+    /**
+     * 主键生成和路由分组耗时
+     */
+    private long routeMillis;
+
+    private boolean success;
+
+    private List<ShardWriteResult> shards;
+}
@@ -0,0 +1,30 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.lix.mycatdemo.exception.BusinessException;
+
+/**
+ * 订单导出格式
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+
+    private final String extension;
+
+    public static ExportFormat of(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new BusinessException("不支持的导出格式: " + name);
+    }
+}
@@ -0,0 +1,25 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 按状态聚合订单的结果：部分分片超时或失败时 complete 为 false，groups 只包含成功分片的数据
+ */
+@Data
+public class OrderAggregateResult {
+
+    private List<StatusAggregate> groups;
+
+    private boolean complete;
+
+    private int totalShards;
+
+    /**
+     * 超时或失败的实际数据节点，如 ms1.t_order_2
+     */
+    private List<String> failedShards;
+
+    private long costMillis;
+}
@@ -0,0 +1,22 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.lix.mycatdemo.dao.OrderDO;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+@AllArgsConstructor
+public class OrderPage {
+
+    private List<OrderDO> orders;
+
+    /**
+     * 下一页的游标，没有更多数据时为 null
+     */
+    private String nextToken;
+}
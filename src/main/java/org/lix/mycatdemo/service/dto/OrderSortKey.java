@@ -0,0 +1,46 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * 订单列表的排序键，order_id 始终作为最后一个排序列保证顺序唯一
+ */
+@Getter
+@AllArgsConstructor
+public enum OrderSortKey {
+
+    ORDER_ID("order_id", null),
+
+    PRICE("price", OrderDO::getPrice);
+
+    /**
+     * 排序列
+     */
+    private final String column;
+
+    /**
+     * 除 order_id 外的排序值，为 null 表示只按 order_id 排序
+     */
+    private final Function<OrderDO, BigDecimal> valueGetter;
+
+    public Comparator<OrderDO> comparator() {
+        Comparator<OrderDO> byOrderId = Comparator.comparing(OrderDO::getOrderId);
+        return valueGetter == null ? byOrderId : Comparator.comparing(valueGetter).thenComparing(byOrderId);
+    }
+
+    public static OrderSortKey of(String name) {
+        for (OrderSortKey sortKey : values()) {
+            if (sortKey.name().equalsIgnoreCase(name) || sortKey.column.equalsIgnoreCase(name)) {
+                return sortKey;
+            }
+        }
+        throw new BusinessException("不支持的排序键: " + name);
+    }
+}
@@ -0,0 +1,32 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 单个实际数据节点的写入结果
+ */
+@Data
+public class ShardWriteResult {
+
+    /**
+     * 实际数据节点，如 ms1.t_order_2
+     */
+    private String dataNode;
+
+    /**
+     * 实际执行写入的物理数据源
+     */
+    private String dataSource;
+
+    private int rows;
+
+    private long costMillis;
+
+    private boolean success;
+
+    private String error;
+
+    private List<Long> orderIds;
+}
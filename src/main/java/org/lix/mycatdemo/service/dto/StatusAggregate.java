@@ -0,0 +1,28 @@
+package org.lix.mycatdemo.service.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 单个订单状态的聚合值，可由多个分片的部分聚合累加
+ */
+@Data
+public class StatusAggregate {
+
+    private String status;
+
+    private long orderCount;
+
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    /**
+     * 合并另一个分片对同一状态的部分聚合
+     */
+    public void merge(long orderCount, BigDecimal revenue) {
+        this.orderCount += orderCount;
+        if (revenue != null) {
+            this.revenue = this.revenue.add(revenue);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.lix.mycatdemo.service.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+
+import java.util.function.Function;
+
+/**
+ * 建立全局二级索引的订单列
+ */
+@Getter
+@AllArgsConstructor
+public enum OrderIndexColumn {
+
+    STATUS("status", OrderDO::getStatus);
+
+    /**
+     * 索引名称，即 t_order_index.index_name
+     */
+    private final String indexName;
+
+    private final Function<OrderDO, String> valueGetter;
+
+    public static OrderIndexColumn of(String name) {
+        for (OrderIndexColumn column : values()) {
+            if (column.name().equalsIgnoreCase(name) || column.indexName.equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        throw new BusinessException("不支持的索引列: " + name);
+    }
+}
@@ -0,0 +1,218 @@
+package org.lix.mycatdemo.service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.service.OrderQueryService;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 订单全局二级索引一致性修复
+ * 1. 正向：按 order_id 游标扫描每个 t_order 实际表，幂等补写索引（写索引失败、历史数据）
+ * 2. 反向：按主键游标扫描每个 t_order_index 实际表，订单不存在或列值已变化时删除索引
+ * 每批都是独立的小查询，不会长时间占用连接
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "order.index.repair", name = "enabled", havingValue = "true")
+public class OrderIndexRepairJob {
+
+    private static final String SCAN_ORDER_SQL = "SELECT order_id, price, user_id, status FROM %s WHERE order_id > ? ORDER BY order_id LIMIT ?";
+
+    private static final String SCAN_INDEX_SQL = "SELECT index_name, index_value, order_id, data_node FROM %s"
+            + " WHERE (index_name, index_value, order_id) > (?, ?, ?) ORDER BY index_name, index_value, order_id LIMIT ?";
+
+    private static final String DELETE_INDEX_SQL = "DELETE FROM %s WHERE index_name = ? AND index_value = ? AND order_id = ?";
+
+    @Value("${order.index.repair.batch-size:500}")
+    private int batchSize;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private OrderIndexService orderIndexService;
+
+    private volatile boolean running;
+
+    @Scheduled(initialDelayString = "${order.index.repair.initial-delay-ms:60000}",
+            fixedDelayString = "${order.index.repair.interval-ms:3600000}")
+    public void repair() {
+        if (running) {
+            return;
+        }
+        running = true;
+        long start = System.currentTimeMillis();
+        try {
+            long upserted = 0;
+            for (DataNode orderNode : shardingRuntime.getActualDataNodes("t_order")) {
+                upserted += repairMissing(orderNode);
+            }
+            long removed = 0;
+            for (DataNode indexNode : shardingRuntime.getActualDataNodes(OrderIndexService.INDEX_TABLE)) {
+                removed += removeStale(indexNode);
+            }
+            log.info("订单二级索引修复完成：补写 {} 条，删除过期 {} 条，耗时 {} ms",
+                    upserted, removed, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("订单二级索引修复失败", e);
+        } finally {
+            running = false;
+        }
+    }
+
+    private long repairMissing(DataNode orderNode) throws SQLException {
+        long upserted = 0;
+        long lastOrderId = Long.MIN_VALUE;
+        while (true) {
+            List<OrderDO> orders = new ArrayList<>(batchSize);
+            try (Connection connection = shardingRuntime.getReadDataSource(orderNode.getDataSourceName()).getConnection();
+                 PreparedStatement ps = connection.prepareStatement(String.format(SCAN_ORDER_SQL, orderNode.getTableName()))) {
+                ps.setLong(1, lastOrderId);
+                ps.setInt(2, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        orders.add(OrderQueryService.mapRow(rs));
+                    }
+                }
+            }
+            if (orders.isEmpty()) {
+                return upserted;
+            }
+            upserted += orderIndexService.upsert(orderNode, orders);
+            lastOrderId = orders.get(orders.size() - 1).getOrderId();
+            if (orders.size() < batchSize) {
+                return upserted;
+            }
+        }
+    }
+
+    private long removeStale(DataNode indexNode) throws SQLException {
+        long removed = 0;
+        String lastName = "";
+        String lastValue = "";
+        long lastOrderId = Long.MIN_VALUE;
+        while (true) {
+            List<IndexEntry> entries = new ArrayList<>(batchSize);
+            try (Connection connection = shardingRuntime.getReadDataSource(indexNode.getDataSourceName()).getConnection();
+                 PreparedStatement ps = connection.prepareStatement(String.format(SCAN_INDEX_SQL, indexNode.getTableName()))) {
+                ps.setString(1, lastName);
+                ps.setString(2, lastValue);
+                ps.setLong(3, lastOrderId);
+                ps.setInt(4, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new IndexEntry(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getString(4)));
+                    }
+                }
+            }
+            if (entries.isEmpty()) {
+                return removed;
+            }
+
+            List<IndexEntry> stale = findStale(entries);
+            if (!stale.isEmpty()) {
+                try (Connection connection = shardingRuntime.getWriteDataSource(indexNode.getDataSourceName()).getConnection();
+                     PreparedStatement ps = connection.prepareStatement(String.format(DELETE_INDEX_SQL, indexNode.getTableName()))) {
+                    for (IndexEntry entry : stale) {
+                        ps.setString(1, entry.indexName);
+                        ps.setString(2, entry.indexValue);
+                        ps.setLong(3, entry.orderId);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                removed += stale.size();
+            }
+
+            IndexEntry last = entries.get(entries.size() - 1);
+            lastName = last.indexName;
+            lastValue = last.indexValue;
+            lastOrderId = last.orderId;
+            if (entries.size() < batchSize) {
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * 按索引记录的实际数据节点回查订单，订单不存在或列值不一致即为过期
+     */
+    private List<IndexEntry> findStale(List<IndexEntry> entries) throws SQLException {
+        Map<String, List<IndexEntry>> entriesByNode = entries.stream()
+                .collect(Collectors.groupingBy(entry -> entry.dataNode, LinkedHashMap::new, Collectors.toList()));
+        List<IndexEntry> stale = new ArrayList<>();
+        for (Map.Entry<String, List<IndexEntry>> group : entriesByNode.entrySet()) {
+            DataNode orderNode = new DataNode(group.getKey());
+            Map<Long, OrderDO> orders = loadOrders(orderNode, group.getValue().stream()
+                    .map(entry -> entry.orderId).distinct().collect(Collectors.toList()));
+            for (IndexEntry entry : group.getValue()) {
+                OrderDO order = orders.get(entry.orderId);
+                OrderIndexColumn column = findColumn(entry.indexName);
+                if (order == null || column == null || !entry.indexValue.equals(column.getValueGetter().apply(order))) {
+                    stale.add(entry);
+                }
+            }
+        }
+        return stale;
+    }
+
+    private Map<Long, OrderDO> loadOrders(DataNode orderNode, List<Long> orderIds) throws SQLException {
+        String placeholders = orderIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        String sql = "SELECT order_id, price, user_id, status FROM " + orderNode.getTableName() + " WHERE order_id IN (" + placeholders + ")";
+        Map<Long, OrderDO> orders = new HashMap<>(orderIds.size() * 2);
+        // 回查走写库，避免从库延迟把刚写入的订单误判为不存在
+        try (Connection connection = shardingRuntime.getWriteDataSource(orderNode.getDataSourceName()).getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < orderIds.size(); i++) {
+                ps.setLong(i + 1, orderIds.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    OrderDO order = OrderQueryService.mapRow(rs);
+                    orders.put(order.getOrderId(), order);
+                }
+            }
+        }
+        return orders;
+    }
+
+    private OrderIndexColumn findColumn(String indexName) {
+        for (OrderIndexColumn column : orderIndexService.getColumns()) {
+            if (column.getIndexName().equals(indexName)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    private static class IndexEntry {
+
+        private final String indexName;
+
+        private final String indexValue;
+
+        private final long orderId;
+
+        private final String dataNode;
+
+        private IndexEntry(String indexName, String indexValue, long orderId, String dataNode) {
+            this.indexName = indexName;
+            this.indexValue = indexValue;
+            this.orderId = orderId;
+            this.dataNode = dataNode;
+        }
+    }
+}
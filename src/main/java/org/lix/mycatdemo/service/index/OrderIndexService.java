@@ -0,0 +1,194 @@
+package org.lix.mycatdemo.service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.mapper.OrderMapper;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 订单全局二级索引
+ * t_order_index 按索引值分片，保存 (索引名, 索引值) → (order_id, 实际数据节点)
+ * 1. 写入：订单落库后按索引值分组，直接写入索引表所在的实际节点，失败只记录，由修复任务补齐
+ * 2. 查询：先在唯一的索引分片上查出 order_id，再通过 OrderMapper 按 order_id 精确查询，过滤掉已经过期的索引
+ * 注意：同一个索引值的所有条目都在同一张索引表上。status 这类只有几个取值的低基数列，
+ * 写入会集中到少数几个索引分片，单个值的条目数也会随订单量增长，只适合演示和低流量场景；
+ * 生产环境应只对高基数列建索引
+ */
+@Slf4j
+@Service
+public class OrderIndexService {
+
+    static final String INDEX_TABLE = "t_order_index";
+
+    static final String UPSERT_SQL = "INSERT INTO %s (index_name, index_value, order_id, data_node) VALUES (?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE data_node = VALUES(data_node)";
+
+    private static final String LOOKUP_SQL = "SELECT order_id FROM %s WHERE index_name = ? AND index_value = ? ORDER BY order_id LIMIT ?";
+
+    /**
+     * 建立索引的列，逗号分隔
+     */
+    @Value("${order.index.columns:status}")
+    private String indexColumns;
+
+    @Value("${order.index.max-lookup-size:1000}")
+    private int maxLookupSize;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private OrderMapper orderMapper;
+
+    private List<OrderIndexColumn> columns;
+
+    private final AtomicLong indexedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong staleCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        columns = Arrays.stream(indexColumns.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(OrderIndexColumn::of)
+                .collect(Collectors.toList());
+        log.info("订单全局二级索引列: {}", columns);
+    }
+
+    public List<OrderIndexColumn> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 为已落库的订单写索引，失败不影响主流程
+     * @param orderNode 订单所在实际数据节点
+     * @param orders 订单
+     */
+    public void index(DataNode orderNode, List<OrderDO> orders) {
+        try {
+            indexedCount.addAndGet(upsert(orderNode, orders));
+        } catch (Exception e) {
+            failedCount.addAndGet(orders.size());
+            log.warn("写入订单二级索引失败，{} 条订单等待修复任务补齐", orders.size(), e);
+        }
+    }
+
+    /**
+     * 为单个订单写索引，订单所在节点按分片规则计算
+     */
+    public void index(OrderDO order) {
+        Map<String, Comparable<?>> shardingValues = new HashMap<>(4);
+        shardingValues.put("order_id", order.getOrderId());
+        shardingValues.put("user_id", order.getUserId());
+        index(shardingRuntime.route("t_order", shardingValues), Collections.singletonList(order));
+    }
+
+    /**
+     * 写入索引，已存在时覆盖实际数据节点
+     * @return 写入的索引条数
+     */
+    int upsert(DataNode orderNode, List<OrderDO> orders) throws SQLException {
+        String dataNode = orderNode.getDataSourceName() + "." + orderNode.getTableName();
+        Map<DataNode, List<Object[]>> entriesByNode = new LinkedHashMap<>();
+        for (OrderDO order : orders) {
+            for (OrderIndexColumn column : columns) {
+                String value = column.getValueGetter().apply(order);
+                if (value == null) {
+                    continue;
+                }
+                entriesByNode.computeIfAbsent(routeIndex(value), k -> new ArrayList<>())
+                        .add(new Object[]{column.getIndexName(), value, order.getOrderId(), dataNode});
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<DataNode, List<Object[]>> entry : entriesByNode.entrySet()) {
+            DataNode indexNode = entry.getKey();
+            try (Connection connection = shardingRuntime.getWriteDataSource(indexNode.getDataSourceName()).getConnection();
+                 PreparedStatement ps = connection.prepareStatement(String.format(UPSERT_SQL, indexNode.getTableName()))) {
+                for (Object[] row : entry.getValue()) {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                count += entry.getValue().size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 通过二级索引查询订单
+     * @param column 索引列
+     * @param value 索引值
+     * @param limit 最多返回条数
+     * @return 当前值仍与索引值一致的订单
+     */
+    public List<OrderDO> lookup(OrderIndexColumn column, String value, int limit) {
+        if (!columns.contains(column)) {
+            throw new BusinessException("列 " + column.getIndexName() + " 未建立二级索引");
+        }
+        if (limit <= 0 || limit > maxLookupSize) {
+            throw new BusinessException("limit 需在 1 到 " + maxLookupSize + " 之间");
+        }
+
+        List<Long> orderIds = new ArrayList<>();
+        DataNode indexNode = routeIndex(value);
+        try (Connection connection = shardingRuntime.getReadDataSource(indexNode.getDataSourceName()).getConnection();
+             PreparedStatement ps = connection.prepareStatement(String.format(LOOKUP_SQL, indexNode.getTableName()))) {
+            ps.setString(1, column.getIndexName());
+            ps.setString(2, value);
+            ps.setInt(3, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    orderIds.add(rs.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new BusinessException("查询订单二级索引失败: " + e.getMessage(), e);
+        }
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<OrderDO> orders = orderMapper.selectByOrderIds(orderIds);
+        List<OrderDO> matched = orders.stream()
+                .filter(order -> value.equals(column.getValueGetter().apply(order)))
+                .sorted(Comparator.comparing(OrderDO::getOrderId))
+                .collect(Collectors.toList());
+        if (matched.size() < orderIds.size()) {
+            staleCount.addAndGet(orderIds.size() - matched.size());
+            log.debug("二级索引 {}={} 有 {} 条过期记录", column.getIndexName(), value, orderIds.size() - matched.size());
+        }
+        return matched;
+    }
+
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("indexed", indexedCount.get());
+        statistics.put("failed", failedCount.get());
+        statistics.put("stale", staleCount.get());
+        return statistics;
+    }
+
+    DataNode routeIndex(String value) {
+        return shardingRuntime.route(INDEX_TABLE, Collections.<String, Comparable<?>>singletonMap("index_value", value));
+    }
+}
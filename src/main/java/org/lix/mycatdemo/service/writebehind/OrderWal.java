@@ -0,0 +1,285 @@
+package org.lix.mycatdemo.service.writebehind;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.dao.OrderDO;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 订单本地预写日志：按段存放，每段是一个定长的内存映射文件
+ *
+ * 记录格式：| 内容长度(int) | CRC32(int) | orderId(long) | userId(long) | price | status |
+ * 字符串字段为 | 长度(short，-1 表示 null) | UTF-8 |
+ * 文件预分配时以 0 填充，读到长度为 0 或校验失败即认为该段结束
+ *
+ * 每段记录未落库的条数，段被封存（写满或重启）且全部落库后删除文件
+ * 写入 MappedByteBuffer 后进程崩溃不会丢数据；操作系统崩溃需要开启 forceOnAppend
+ */
+@Slf4j
+public class OrderWal {
+
+    private static final String SEGMENT_PREFIX = "order-wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+
+    private final int segmentBytes;
+
+    private final boolean forceOnAppend;
+
+    private long nextSegmentSeq;
+
+    /**
+     * 当前写入段，append 加锁访问
+     */
+    private Segment current;
+
+    public OrderWal(Path dir, int segmentBytes, boolean forceOnAppend) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.forceOnAppend = forceOnAppend;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * 读取已有段中的全部有效记录；这些段全部封存，之后的写入使用新段
+     * 只能在 append 之前调用一次
+     */
+    public synchronized List<Entry> recover() throws IOException {
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(dir)) {
+            segmentFiles = files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path path : segmentFiles) {
+            nextSegmentSeq = Math.max(nextSegmentSeq, seqOf(path) + 1);
+            Segment segment = new Segment(path, map(path, Files.size(path)));
+            List<OrderDO> orders = readAll(segment.buffer, path);
+            for (OrderDO order : orders) {
+                segment.retain();
+                entries.add(new Entry(segment, order));
+            }
+            segment.seal();
+            log.info("恢复订单预写日志段 {}：{} 条记录", path.getFileName(), orders.size());
+        }
+        return entries;
+    }
+
+    /**
+     * 追加一条订单记录，返回后即可确认
+     */
+    public synchronized Entry append(OrderDO order) throws IOException {
+        byte[] payload = encode(order);
+        int recordBytes = HEADER_BYTES + payload.length;
+        // 末尾至少留 4 字节 0 作为结束标记
+        if (recordBytes + 4 > segmentBytes) {
+            throw new IllegalArgumentException("订单记录超过预写日志段大小: " + recordBytes);
+        }
+        if (current == null || current.buffer.remaining() < recordBytes + 4) {
+            roll();
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        MappedByteBuffer buffer = current.buffer;
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(payload);
+        if (forceOnAppend) {
+            buffer.force();
+        }
+        current.retain();
+        return new Entry(current, order);
+    }
+
+    /**
+     * 记录已落库
+     */
+    public void release(Entry entry) {
+        entry.segment.release();
+    }
+
+    public synchronized void close() {
+        if (current != null) {
+            current.buffer.force();
+            current.seal();
+            current = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            current.buffer.force();
+            current.seal();
+        }
+        Path path = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentSeq++, SEGMENT_SUFFIX));
+        current = new Segment(path, map(path, segmentBytes));
+        log.debug("创建订单预写日志段 {}", path.getFileName());
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            // 映射在 channel 关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static List<OrderDO> readAll(MappedByteBuffer buffer, Path path) {
+        List<OrderDO> orders = new ArrayList<>();
+        ByteBuffer reader = buffer.duplicate();
+        while (reader.remaining() >= HEADER_BYTES) {
+            int length = reader.getInt();
+            int checksum = reader.getInt();
+            if (length <= 0 || length > reader.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            reader.get(payload);
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload, 0, payload.length);
+            if ((int) crc32.getValue() != checksum) {
+                log.warn("订单预写日志 {} 在偏移 {} 处校验失败，忽略之后的内容", path.getFileName(), reader.position() - length - HEADER_BYTES);
+                break;
+            }
+            orders.add(decode(ByteBuffer.wrap(payload)));
+        }
+        return orders;
+    }
+
+    private static byte[] encode(OrderDO order) {
+        byte[] price = order.getPrice() == null ? null : order.getPrice().toPlainString().getBytes(StandardCharsets.UTF_8);
+        byte[] status = order.getStatus() == null ? null : order.getStatus().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 2 + length(price) + 2 + length(status));
+        buffer.putLong(order.getOrderId());
+        buffer.putLong(order.getUserId());
+        putBytes(buffer, price);
+        putBytes(buffer, status);
+        return buffer.array();
+    }
+
+    private static OrderDO decode(ByteBuffer buffer) {
+        OrderDO order = new OrderDO();
+        order.setOrderId(buffer.getLong());
+        order.setUserId(buffer.getLong());
+        String price = getString(buffer);
+        order.setPrice(price == null ? null : new BigDecimal(price));
+        order.setStatus(getString(buffer));
+        return order;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long seqOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 一条已写入预写日志的订单
+     */
+    public static class Entry {
+
+        private final Segment segment;
+
+        @Getter
+        private final OrderDO order;
+
+        private Entry(Segment segment, OrderDO order) {
+            this.segment = segment;
+            this.order = order;
+        }
+    }
+
+    /**
+     * 预写日志段，pending 为未落库的记录数
+     */
+    static class Segment {
+
+        private final Path path;
+
+        private final MappedByteBuffer buffer;
+
+        private int pending;
+
+        private boolean sealed;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private synchronized void retain() {
+            pending++;
+        }
+
+        private synchronized void release() {
+            pending--;
+            deleteIfDone();
+        }
+
+        private synchronized void seal() {
+            sealed = true;
+            deleteIfDone();
+        }
+
+        private void deleteIfDone() {
+            if (!sealed || pending > 0) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+                log.debug("订单预写日志段 {} 已全部落库，删除", path.getFileName());
+            } catch (IOException e) {
+                log.warn("删除订单预写日志段失败: {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.lix.mycatdemo.service.writebehind;
+
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.dao.OrderDO;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.lix.mycatdemo.service.OrderShardWriter;
+import org.lix.mycatdemo.service.index.OrderIndexService;
+import org.lix.mycatdemo.sharding.ShardGene;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * XXX 订单 write-behind 写入
+ * 1. 订单先路由到实际数据节点，追加到本地预写日志后立即确认
+ * 2. 每个实际数据节点一个 group commit 线程：攒够 batchSize 条或等待 lingerMs 后批量提交
+ * 3. 连接失败、超时等瞬时错误按 retryBackoffMs 重试，不丢弃；重启时重放预写日志中未删除的记录
+ *    数据错误、约束冲突（SQLState 22/23）重试也不会成功：逐条提交找出有问题的订单，写入死信文件后从预写日志释放
+ * 4. 写入按 order_id 幂等，重放已落库的记录不会产生重复订单
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "order.write-behind", name = "enabled", havingValue = "true")
+public class OrderWriteBehindService {
+
+    private static final String LOGIC_TABLE = "t_order";
+
+    /**
+     * t_order.price decimal(10, 2)
+     */
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+
+    /**
+     * t_order.status varchar(20)
+     */
+    private static final int MAX_STATUS_LENGTH = 20;
+
+    private static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+
+    @Value("${order.write-behind.wal-dir:${user.home}/.sharding-jdbc-demo/order-wal}")
+    private String walDir;
+
+    @Value("${order.write-behind.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    /**
+     * 每次追加后是否 force 到磁盘，关闭时只能保证进程崩溃不丢数据
+     */
+    @Value("${order.write-behind.force-on-append:false}")
+    private boolean forceOnAppend;
+
+    @Value("${order.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.write-behind.linger-ms:5}")
+    private long lingerMs;
+
+    /**
+     * 单个分片待落库队列的容量，队列满时阻塞调用方
+     */
+    @Value("${order.write-behind.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${order.write-behind.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${order.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    @Resource
+    private OrderShardWriter orderShardWriter;
+
+    @Resource
+    private OrderIndexService orderIndexService;
+
+    private OrderWal wal;
+
+    /**
+     * 实际数据节点 → group commit 线程
+     */
+    private final Map<String, ShardFlusher> flushers = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    private final AtomicLong acceptedCount = new AtomicLong(0);
+    private final AtomicLong replayedCount = new AtomicLong(0);
+    private final AtomicLong flushedCount = new AtomicLong(0);
+    private final AtomicLong duplicateCount = new AtomicLong(0);
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong failedFlushCount = new AtomicLong(0);
+    private final AtomicLong deadLetterCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() throws IOException {
+        wal = new OrderWal(Paths.get(walDir), segmentBytes, forceOnAppend);
+        List<OrderWal.Entry> recovered = wal.recover();
+        for (OrderWal.Entry entry : recovered) {
+            String invalid = validate(entry.getOrder());
+            if (invalid != null) {
+                // 校验加入之前写入的非法订单，重放只会一直失败
+                deadLetter(entry, invalid);
+                continue;
+            }
+            try {
+                dispatch(route(entry.getOrder()), entry);
+                replayedCount.incrementAndGet();
+            } catch (Exception e) {
+                // 保留在预写日志中，下次启动再重放
+                log.error("重放订单 {} 失败", entry.getOrder().getOrderId(), e);
+            }
+        }
+        log.info("订单 write-behind 已启动，预写日志目录: {}，重放 {} 条记录", walDir, replayedCount.get());
+    }
+
+    /**
+     * 接收订单：写入预写日志后返回，异步落库
+     * @param order 订单，未指定 orderId 时自动生成，指定的 orderId 必须带有 userId 的分片基因
+     * @return 订单号
+     */
+    public Long accept(OrderDO order) {
+        if (!running) {
+            throw new BusinessException("订单 write-behind 已停止");
+        }
+        String invalid = validate(order);
+        if (invalid != null) {
+            throw new BusinessException(invalid);
+        }
+        if (order.getOrderId() == null) {
+            order.setOrderId(((Number) shardingRuntime.generateKey(LOGIC_TABLE, order.getUserId())).longValue());
+        }
+        DataNode dataNode = route(order);
+        OrderWal.Entry entry;
+        try {
+            entry = wal.append(order);
+        } catch (IOException e) {
+            throw new BusinessException("写入订单预写日志失败", e);
+        }
+        dispatch(dataNode, entry);
+        acceptedCount.incrementAndGet();
+        return order.getOrderId();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("accepted", acceptedCount.get());
+        statistics.put("replayed", replayedCount.get());
+        statistics.put("flushed", flushedCount.get());
+        statistics.put("duplicates", duplicateCount.get());
+        statistics.put("batches", batchCount.get());
+        statistics.put("failedFlushes", failedFlushCount.get());
+        statistics.put("deadLetters", deadLetterCount.get());
+        statistics.put("pending", flushers.values().stream()
+                .collect(Collectors.toMap(flusher -> flusher.name, flusher -> flusher.queue.size())));
+        return statistics;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        for (ShardFlusher flusher : flushers.values()) {
+            flusher.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (flusher.thread.isAlive()) {
+                log.warn("分片 {} 仍有 {} 条订单未落库，将在下次启动时重放", flusher.name, flusher.queue.size());
+                flusher.thread.interrupt();
+            }
+        }
+        wal.close();
+    }
+
+    /**
+     * 按 t_order 的 NOT NULL 和长度约束校验，确认后才能保证落库只会因为瞬时错误失败
+     * @return 不合法的原因，合法时返回 null
+     */
+    private String validate(OrderDO order) {
+        if (order.getUserId() == null) {
+            return "订单缺少 userId";
+        }
+        // 基因不一致的订单会写入按 userId 查询不到的实际表，ON DUPLICATE KEY 还可能吞掉其他用户的同号订单
+        if (order.getOrderId() != null && !ShardGene.sameGene(order.getOrderId(), order.getUserId())) {
+            return "订单 orderId 与 userId 分片基因不一致: " + order.getOrderId();
+        }
+        if (order.getPrice() == null) {
+            return "订单缺少 price";
+        }
+        if (order.getPrice().scale() > 2 || order.getPrice().abs().compareTo(MAX_PRICE) > 0) {
+            return "订单 price 超出 decimal(10, 2) 范围: " + order.getPrice().toPlainString();
+        }
+        if (order.getStatus() == null) {
+            return "订单缺少 status";
+        }
+        if (order.getStatus().length() > MAX_STATUS_LENGTH) {
+            return "订单 status 长度超过 " + MAX_STATUS_LENGTH;
+        }
+        return null;
+    }
+
+    /**
+     * 写入死信文件（每行一个 JSON）后从预写日志释放，需要人工处理
+     */
+    private synchronized void deadLetter(OrderWal.Entry entry, String reason) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("time", System.currentTimeMillis());
+        record.put("reason", reason);
+        record.put("order", entry.getOrder());
+        Path path = Paths.get(walDir, DEAD_LETTER_FILE);
+        try {
+            Files.write(path, (JSON.toJSONString(record) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // 死信写入失败时保留在预写日志中，下次启动再处理
+            log.error("订单 {} 写入死信文件失败: {}", entry.getOrder().getOrderId(), reason, e);
+            return;
+        }
+        wal.release(entry);
+        deadLetterCount.incrementAndGet();
+        log.error("订单 {} 无法落库，已写入死信文件 {}: {}", entry.getOrder().getOrderId(), path, reason);
+    }
+
+    /**
+     * 数据错误、约束冲突等与具体行有关的错误，重试不会成功
+     */
+    private static boolean isRowError(Throwable error) {
+        for (Throwable cause = error; cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof SQLDataException || cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private DataNode route(OrderDO order) {
+        Map<String, Comparable<?>> shardingValues = new HashMap<>(4);
+        shardingValues.put("order_id", order.getOrderId());
+        shardingValues.put("user_id", order.getUserId());
+        return shardingRuntime.route(LOGIC_TABLE, shardingValues);
+    }
+
+    private void dispatch(DataNode dataNode, OrderWal.Entry entry) {
+        String name = dataNode.getDataSourceName() + "." + dataNode.getTableName();
+        ShardFlusher flusher = flushers.computeIfAbsent(name, k -> new ShardFlusher(k, dataNode));
+        try {
+            flusher.queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("订单入队被中断，已写入预写日志，将在重启后落库", e);
+        }
+    }
+
+    /**
+     * 单个实际数据节点的 group commit 线程
+     */
+    private class ShardFlusher implements Runnable {
+
+        private final String name;
+
+        private final DataNode dataNode;
+
+        private final BlockingQueue<OrderWal.Entry> queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        private final Thread thread;
+
+        private ShardFlusher(String name, DataNode dataNode) {
+            this.name = name;
+            this.dataNode = dataNode;
+            this.thread = new Thread(this, "order-write-behind-" + name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    OrderWal.Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<OrderWal.Entry> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                    while (batch.size() < batchSize) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0) {
+                            break;
+                        }
+                        OrderWal.Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 提交一批订单，瞬时错误一直重试直到成功或被中断；数据错误时逐条提交，把有问题的订单转入死信
+         */
+        private void flush(List<OrderWal.Entry> batch) throws InterruptedException {
+            List<OrderWal.Entry> pending = batch;
+            while (true) {
+                try {
+                    write(pending);
+                    return;
+                } catch (Exception e) {
+                    failedFlushCount.incrementAndGet();
+                    if (isRowError(e)) {
+                        log.warn("分片 {} 提交 {} 条订单遇到数据错误，逐条提交以隔离有问题的订单", name, pending.size(), e);
+                        pending = writeOneByOne(pending);
+                        if (pending.isEmpty()) {
+                            return;
+                        }
+                    } else {
+                        log.error("分片 {} 提交 {} 条订单失败，{} ms 后重试", name, pending.size(), retryBackoffMs, e);
+                    }
+                    TimeUnit.MILLISECONDS.sleep(retryBackoffMs);
+                }
+            }
+        }
+
+        /**
+         * @return 遇到瞬时错误时尚未提交的订单，需要稍后重试
+         */
+        private List<OrderWal.Entry> writeOneByOne(List<OrderWal.Entry> batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                OrderWal.Entry entry = batch.get(i);
+                try {
+                    write(Collections.singletonList(entry));
+                } catch (Exception e) {
+                    if (!isRowError(e)) {
+                        log.error("分片 {} 逐条提交订单失败，{} ms 后重试剩余 {} 条", name, retryBackoffMs, batch.size() - i, e);
+                        return new ArrayList<>(batch.subList(i, batch.size()));
+                    }
+                    deadLetter(entry, e.getMessage());
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        private void write(List<OrderWal.Entry> entries) throws SQLException {
+            List<OrderDO> orders = entries.stream().map(OrderWal.Entry::getOrder).collect(Collectors.toList());
+            int rows = orderShardWriter.write(dataNode, orders, true);
+            orderIndexService.index(dataNode, orders);
+            entries.forEach(wal::release);
+            batchCount.incrementAndGet();
+            flushedCount.addAndGet(orders.size());
+            duplicateCount.addAndGet(orders.size() - rows);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.lix.mycatdemo.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * XXX 分片基因：order_id 的低 GENE_BITS 位等于 user_id 的低 GENE_BITS 位
+ * 分库、分表只使用基因计算，因此 user_id 和 order_id 任意一个都能路由到唯一的实际表
+ *
+ * 基因的低半部分决定库，高半部分决定表，库和表的数量都不需要相互感知
+ * 基因位数可通过 JVM 参数调整，主键生成器和分片算法必须一致：-Dsharding.gene.bits=4
+ */
+public final class ShardGene {
+
+    public static final int GENE_BITS = Integer.getInteger("sharding.gene.bits", 4);
+
+    private static final long GENE_MASK = (1L << GENE_BITS) - 1;
+
+    private static final int DATABASE_BITS = Math.max(1, GENE_BITS / 2);
+
+    private static final long DATABASE_MASK = (1L << DATABASE_BITS) - 1;
+
+    /**
+     * 生成主键时使用的 user_id
+     */
+    private static final ThreadLocal<Long> USER_ID_HOLDER = new ThreadLocal<>();
+
+    private ShardGene() { }
+
+    public static int geneOf(long value) {
+        return (int) (value & GENE_MASK);
+    }
+
+    /**
+     * order_id 是否带有 user_id 的基因；调用方指定的 order_id 不带基因时，按 order_id 路由的实际表与按 user_id 查询的不一致
+     */
+    public static boolean sameGene(long orderId, long userId) {
+        return geneOf(orderId) == geneOf(userId);
+    }
+
+    public static int databaseIndex(int gene, int databaseCount) {
+        return (int) ((gene & DATABASE_MASK) % databaseCount);
+    }
+
+    public static int tableIndex(int gene, int tableCount) {
+        return (gene >>> DATABASE_BITS) % tableCount;
+    }
+
+    /**
+     * 在指定 user_id 的上下文中执行，期间生成的 SHARD_GENE 主键都带有该用户的基因
+     */
+    public static <T> T callWithUser(long userId, Supplier<T> action) {
+        Long previous = USER_ID_HOLDER.get();
+        USER_ID_HOLDER.set(userId);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                USER_ID_HOLDER.remove();
+            } else {
+                USER_ID_HOLDER.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前上下文中的 user_id，没有时返回 null
+     */
+    public static Long currentUserId() {
+        return USER_ID_HOLDER.get();
+    }
+}
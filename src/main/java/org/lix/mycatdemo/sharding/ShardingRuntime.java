@@ -0,0 +1,224 @@
+package org.lix.mycatdemo.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.core.rule.MasterSlaveRule;
+import org.apache.shardingsphere.core.rule.ShardingRule;
+import org.apache.shardingsphere.core.rule.TableRule;
+import org.apache.shardingsphere.core.strategy.route.ShardingStrategy;
+import org.apache.shardingsphere.core.strategy.route.value.ListRouteValue;
+import org.apache.shardingsphere.core.strategy.route.value.RouteValue;
+import org.apache.shardingsphere.shardingjdbc.jdbc.core.datasource.ShardingDataSource;
+import org.apache.shardingsphere.underlying.common.config.properties.ConfigurationProperties;
+import org.apache.shardingsphere.underlying.common.rule.DataNode;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.util.*;
+
+/**
+ * 当前生效的分片运行时：配置刷新后 shardingDataSource Bean 会被替换，每次调用都取最新的 Bean
+ * 提供按分片键计算实际数据节点、定位主从物理数据源等能力，供绕过 SQL 解析直接访问分片的场景使用
+ */
+@Slf4j
+@Component
+public class ShardingRuntime {
+
+    private static final String SHARDING_DATASOURCE_BEAN_NAME = "shardingDataSource";
+
+    @Resource
+    private ApplicationContext applicationContext;
+
+    /**
+     * 获得当前生效的分片数据源
+     */
+    public ShardingDataSource getShardingDataSource() {
+        DataSource dataSource = applicationContext.getBean(SHARDING_DATASOURCE_BEAN_NAME, DataSource.class);
+        if (!(dataSource instanceof ShardingDataSource)) {
+            throw new BusinessException("当前数据源不是 ShardingDataSource: " + dataSource.getClass().getName());
+        }
+        return (ShardingDataSource) dataSource;
+    }
+
+    public ShardingRule getShardingRule() {
+        return getShardingDataSource().getRuntimeContext().getRule();
+    }
+
+    /**
+     * 逻辑表的全部实际数据节点
+     */
+    public List<DataNode> getActualDataNodes(String logicTable) {
+        return getShardingRule().getTableRule(logicTable).getActualDataNodes();
+    }
+
+    /**
+     * 使用逻辑表配置的主键生成器生成主键
+     * @param logicTable 逻辑表
+     * @param userId 下单用户，SHARD_GENE 生成器据此写入分片基因
+     */
+    public Comparable<?> generateKey(String logicTable, long userId) {
+        ShardingRule shardingRule = getShardingRule();
+        return ShardGene.callWithUser(userId, () -> shardingRule.generateKey(logicTable));
+    }
+
+    /**
+     * 按分片键的值计算唯一的实际数据节点
+     * @param logicTable 逻辑表
+     * @param shardingValues 分片列 → 值，需覆盖分库和分表策略用到的全部分片列
+     * @return 实际数据节点，数据源名称为逻辑数据源（主从规则名称或物理数据源名称）
+     */
+    public DataNode route(String logicTable, Map<String, Comparable<?>> shardingValues) {
+        ShardingDataSource shardingDataSource = getShardingDataSource();
+        ShardingRule shardingRule = shardingDataSource.getRuntimeContext().getRule();
+        ConfigurationProperties properties = shardingDataSource.getRuntimeContext().getProperties();
+        TableRule tableRule = shardingRule.getTableRule(logicTable);
+
+        String dataSourceName = routeSingle(shardingRule.getDatabaseShardingStrategy(tableRule),
+                tableRule.getActualDatasourceNames(), logicTable, shardingValues, properties);
+        String tableName = routeSingle(shardingRule.getTableShardingStrategy(tableRule),
+                tableRule.getActualTableNames(dataSourceName), logicTable, shardingValues, properties);
+        return new DataNode(dataSourceName, tableName);
+    }
+
+    /**
+     * 按已知的分片键裁剪实际数据节点：策略用到的分片列都没有值时保留全部
+     * @param logicTable 逻辑表
+     * @param shardingValues 分片列 → 值，可以为空
+     * @return 可能命中的实际数据节点
+     */
+    public List<DataNode> routeAll(String logicTable, Map<String, Comparable<?>> shardingValues) {
+        ShardingDataSource shardingDataSource = getShardingDataSource();
+        ShardingRule shardingRule = shardingDataSource.getRuntimeContext().getRule();
+        ConfigurationProperties properties = shardingDataSource.getRuntimeContext().getProperties();
+        TableRule tableRule = shardingRule.getTableRule(logicTable);
+
+        List<DataNode> dataNodes = new ArrayList<>();
+        for (String dataSourceName : prune(shardingRule.getDatabaseShardingStrategy(tableRule),
+                tableRule.getActualDatasourceNames(), logicTable, shardingValues, properties)) {
+            for (String tableName : prune(shardingRule.getTableShardingStrategy(tableRule),
+                    tableRule.getActualTableNames(dataSourceName), logicTable, shardingValues, properties)) {
+                dataNodes.add(new DataNode(dataSourceName, tableName));
+            }
+        }
+        return dataNodes;
+    }
+
+    /**
+     * 逻辑数据源对应的写库名称：主从规则返回主库，否则原样返回
+     */
+    public String getWriteDataSourceName(String dataSourceName) {
+        MasterSlaveRule masterSlaveRule = findMasterSlaveRule(dataSourceName);
+        return masterSlaveRule == null ? dataSourceName : masterSlaveRule.getMasterDataSourceName();
+    }
+
+    /**
+     * 逻辑数据源对应的读库名称：主从规则返回全部从库，否则返回自身
+     */
+    public List<String> getReadDataSourceNames(String dataSourceName) {
+        MasterSlaveRule masterSlaveRule = findMasterSlaveRule(dataSourceName);
+        return masterSlaveRule == null
+                ? Collections.singletonList(dataSourceName)
+                : new ArrayList<>(masterSlaveRule.getSlaveDataSourceNames());
+    }
+
+    /**
+     * 逻辑数据源对应的写库
+     */
+    public DataSource getWriteDataSource(String dataSourceName) {
+        return getPhysicalDataSource(getWriteDataSourceName(dataSourceName));
+    }
+
+    /**
+     * 逻辑数据源对应的读库名称：由主从规则配置的负载均衡算法选择（REPLICATION_LAG 可能返回主库），非主从规则返回自身
+     */
+    public String getReadDataSourceName(String dataSourceName) {
+        return getReadDataSourceName(dataSourceName, Collections.emptySet());
+    }
+
+    /**
+     * 排除部分从库后由负载均衡算法选择读库，用于对冲读挑选第二个从库
+     * @param excludedNames 不参与选择的从库
+     * @return 剩余从库都不可用时返回主库
+     */
+    public String getReadDataSourceName(String dataSourceName, Collection<String> excludedNames) {
+        MasterSlaveRule masterSlaveRule = findMasterSlaveRule(dataSourceName);
+        if (masterSlaveRule == null) {
+            return dataSourceName;
+        }
+        List<String> slaveNames = new ArrayList<>(masterSlaveRule.getSlaveDataSourceNames());
+        slaveNames.removeAll(excludedNames);
+        if (slaveNames.isEmpty()) {
+            return masterSlaveRule.getMasterDataSourceName();
+        }
+        return masterSlaveRule.getLoadBalanceAlgorithm()
+                .getDataSource(masterSlaveRule.getName(), masterSlaveRule.getMasterDataSourceName(), slaveNames);
+    }
+
+    /**
+     * 逻辑数据源对应的读库，与 Sharding-JDBC 执行 SQL 时的读库选择一致
+     */
+    public DataSource getReadDataSource(String dataSourceName) {
+        return getPhysicalDataSource(getReadDataSourceName(dataSourceName));
+    }
+
+    /**
+     * 物理数据源
+     */
+    public DataSource getPhysicalDataSource(String physicalName) {
+        DataSource dataSource = getShardingDataSource().getDataSourceMap().get(physicalName);
+        if (dataSource == null) {
+            throw new BusinessException("物理数据源不存在: " + physicalName);
+        }
+        return dataSource;
+    }
+
+    private MasterSlaveRule findMasterSlaveRule(String dataSourceName) {
+        for (MasterSlaveRule masterSlaveRule : getShardingRule().getMasterSlaveRules()) {
+            if (masterSlaveRule.getName().equalsIgnoreCase(dataSourceName)) {
+                return masterSlaveRule;
+            }
+        }
+        return null;
+    }
+
+    private Collection<String> prune(ShardingStrategy strategy, Collection<String> targets, String logicTable,
+                                     Map<String, Comparable<?>> shardingValues, ConfigurationProperties properties) {
+        if (targets.size() <= 1) {
+            return targets;
+        }
+        List<RouteValue> routeValues = toRouteValues(strategy, logicTable, shardingValues);
+        return routeValues.isEmpty() ? targets : strategy.doSharding(targets, routeValues, properties);
+    }
+
+    private String routeSingle(ShardingStrategy strategy, Collection<String> targets, String logicTable,
+                               Map<String, Comparable<?>> shardingValues, ConfigurationProperties properties) {
+        if (targets.size() == 1) {
+            return targets.iterator().next();
+        }
+        List<RouteValue> routeValues = toRouteValues(strategy, logicTable, shardingValues);
+        if (routeValues.isEmpty()) {
+            throw new BusinessException(logicTable + " 缺少分片列的值: " + strategy.getShardingColumns());
+        }
+        Collection<String> routed = strategy.doSharding(targets, routeValues, properties);
+        if (routed.size() != 1) {
+            throw new BusinessException(logicTable + " 无法路由到唯一节点，分片值: " + shardingValues + "，路由结果: " + routed);
+        }
+        return routed.iterator().next();
+    }
+
+    /**
+     * 只取有值的分片列：复合分片策略允许部分分片列缺失，由算法决定路由范围
+     */
+    private List<RouteValue> toRouteValues(ShardingStrategy strategy, String logicTable, Map<String, Comparable<?>> shardingValues) {
+        List<RouteValue> routeValues = new ArrayList<>();
+        for (String column : strategy.getShardingColumns()) {
+            Comparable<?> value = shardingValues.get(column);
+            if (value != null) {
+                routeValues.add(new ListRouteValue<>(column, logicTable, Collections.singletonList(value)));
+            }
+        }
+        return routeValues;
+    }
+}
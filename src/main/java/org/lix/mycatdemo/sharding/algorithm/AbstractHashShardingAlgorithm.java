@@ -0,0 +1,34 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+import org.apache.shardingsphere.api.sharding.standard.PreciseShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.standard.PreciseShardingValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按分片值的哈希取模，适用于字符串等非数值分片列
+ * 分库取哈希的低 16 位，分表取高 16 位，库和表的数量不需要相互感知
+ */
+public abstract class AbstractHashShardingAlgorithm implements PreciseShardingAlgorithm<Comparable<?>> {
+
+    @Override
+    public String doSharding(Collection<String> availableTargetNames, PreciseShardingValue<Comparable<?>> shardingValue) {
+        List<String> targets = new ArrayList<>(availableTargetNames);
+        return targets.get(index(hash(shardingValue.getValue()), targets.size()));
+    }
+
+    protected abstract int index(int hash, int targetCount);
+
+    /**
+     * 打散 String.hashCode，避免相近的值落在同一分片
+     */
+    static int hash(Object value) {
+        int h = value.toString().hashCode();
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return h;
+    }
+}
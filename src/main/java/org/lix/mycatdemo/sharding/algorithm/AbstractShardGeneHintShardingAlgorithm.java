@@ -0,0 +1,28 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+import org.apache.shardingsphere.api.sharding.hint.HintShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.hint.HintShardingValue;
+
+import java.util.Collection;
+
+/**
+ * XXX 基于分片基因的 hint 分片算法：路由值由 HintManager 直接给出（order_id 或 user_id，带相同的基因），
+ * 不再从 SQL 条件中提取分片值；没有路由值时全路由
+ * 分库、分表的路由值分别计算，多个值时访问库和表的组合，SQL 自身的条件保证结果正确
+ */
+public abstract class AbstractShardGeneHintShardingAlgorithm implements HintShardingAlgorithm<Comparable<?>> {
+
+    private final AbstractShardGeneShardingAlgorithm delegate;
+
+    protected AbstractShardGeneHintShardingAlgorithm(AbstractShardGeneShardingAlgorithm delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, HintShardingValue<Comparable<?>> shardingValue) {
+        if (shardingValue.getValues() == null || shardingValue.getValues().isEmpty()) {
+            return availableTargetNames;
+        }
+        return delegate.route(availableTargetNames, shardingValue.getValues());
+    }
+}
@@ -0,0 +1,61 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+import org.apache.shardingsphere.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.api.sharding.complex.ComplexKeysShardingValue;
+import org.lix.mycatdemo.sharding.ShardGene;
+
+import java.util.*;
+
+/**
+ * 基于分片基因的复合分片算法，分片列：user_id, order_id
+ * 两列同时出现时以 order_id 为准，保证同一个 order_id 始终落在同一张表上；都没有时全路由
+ */
+public abstract class AbstractShardGeneShardingAlgorithm implements ComplexKeysShardingAlgorithm<Comparable<?>> {
+
+    private static final String ORDER_ID = "order_id";
+
+    private static final String USER_ID = "user_id";
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, ComplexKeysShardingValue<Comparable<?>> shardingValue) {
+        Collection<Comparable<?>> keys = findValues(shardingValue.getColumnNameAndShardingValuesMap(), ORDER_ID);
+        if (keys == null) {
+            keys = findValues(shardingValue.getColumnNameAndShardingValuesMap(), USER_ID);
+        }
+        if (keys == null) {
+            return availableTargetNames;
+        }
+        return route(availableTargetNames, keys);
+    }
+
+    /**
+     * 按每个值的基因选择目标，hint 算法复用
+     */
+    Collection<String> route(Collection<String> availableTargetNames, Collection<? extends Comparable<?>> keys) {
+        List<String> targets = new ArrayList<>(availableTargetNames);
+        Set<String> result = new LinkedHashSet<>();
+        for (Comparable<?> key : keys) {
+            int gene = ShardGene.geneOf(toLong(key));
+            result.add(targets.get(index(gene, targets.size())));
+        }
+        return result;
+    }
+
+    /**
+     * 基因对应的目标下标
+     */
+    protected abstract int index(int gene, int targetCount);
+
+    private Collection<Comparable<?>> findValues(Map<String, Collection<Comparable<?>>> values, String column) {
+        for (Map.Entry<String, Collection<Comparable<?>>> entry : values.entrySet()) {
+            if (column.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private long toLong(Comparable<?> value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+}
@@ -0,0 +1,12 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+/**
+ * 按哈希分库
+ */
+public class HashDatabaseShardingAlgorithm extends AbstractHashShardingAlgorithm {
+
+    @Override
+    protected int index(int hash, int targetCount) {
+        return Math.floorMod(hash & 0xFFFF, targetCount);
+    }
+}
@@ -0,0 +1,12 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+/**
+ * 按哈希分表
+ */
+public class HashTableShardingAlgorithm extends AbstractHashShardingAlgorithm {
+
+    @Override
+    protected int index(int hash, int targetCount) {
+        return Math.floorMod(hash >>> 16, targetCount);
+    }
+}
@@ -0,0 +1,14 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+import org.lix.mycatdemo.sharding.ShardGene;
+
+/**
+ * 基于分片基因的分库算法
+ */
+public class ShardGeneDatabaseShardingAlgorithm extends AbstractShardGeneShardingAlgorithm {
+
+    @Override
+    protected int index(int gene, int targetCount) {
+        return ShardGene.databaseIndex(gene, targetCount);
+    }
+}
@@ -0,0 +1,11 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+/**
+ * 基于分片基因的 hint 分库算法
+ */
+public class ShardGeneHintDatabaseShardingAlgorithm extends AbstractShardGeneHintShardingAlgorithm {
+
+    public ShardGeneHintDatabaseShardingAlgorithm() {
+        super(new ShardGeneDatabaseShardingAlgorithm());
+    }
+}
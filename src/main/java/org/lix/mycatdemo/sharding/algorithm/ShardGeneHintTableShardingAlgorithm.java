@@ -0,0 +1,11 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+/**
+ * 基于分片基因的 hint 分表算法
+ */
+public class ShardGeneHintTableShardingAlgorithm extends AbstractShardGeneHintShardingAlgorithm {
+
+    public ShardGeneHintTableShardingAlgorithm() {
+        super(new ShardGeneTableShardingAlgorithm());
+    }
+}
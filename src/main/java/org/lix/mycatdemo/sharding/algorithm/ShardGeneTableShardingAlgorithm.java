@@ -0,0 +1,14 @@
+package org.lix.mycatdemo.sharding.algorithm;
+
+import org.lix.mycatdemo.sharding.ShardGene;
+
+/**
+ * 基于分片基因的分表算法
+ */
+public class ShardGeneTableShardingAlgorithm extends AbstractShardGeneShardingAlgorithm {
+
+    @Override
+    protected int index(int gene, int targetCount) {
+        return ShardGene.tableIndex(gene, targetCount);
+    }
+}
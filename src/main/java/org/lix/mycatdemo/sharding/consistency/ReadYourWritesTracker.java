@@ -0,0 +1,131 @@
+package org.lix.mycatdemo.sharding.consistency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * XXX 写后读一致性窗口
+ * 用户写入后 window-ms 内，该用户的读请求固定走主库，避免从库延迟导致读不到刚写入的数据
+ * 用户按哈希落到固定数量的槽位，每个槽位只保存一个过期时间戳：
+ * 1. 内存占用固定，不随用户数增长，也不需要清理
+ * 2. 不同用户落到同一槽位时会多走几次主库，不会影响正确性
+ * 当前请求的用户由 SessionUserInterceptor 从请求中绑定，Mapper 的读写由 ShardHintInterceptor 据此处理
+ */
+@Slf4j
+@Component
+public class ReadYourWritesTracker {
+
+    private static final ThreadLocal<Long> SESSION_USER = new ThreadLocal<>();
+
+    @Value("${order.read-your-writes.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.read-your-writes.window-ms:1000}")
+    private long windowMs;
+
+    /**
+     * 槽位数量，向上取整为 2 的幂
+     */
+    @Value("${order.read-your-writes.stripes:4096}")
+    private int stripes;
+
+    private AtomicLongArray expireAt;
+
+    /**
+     * 毫秒时钟，测试中替换
+     */
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private int mask;
+
+    private final AtomicLong writeCount = new AtomicLong(0);
+    private final AtomicLong pinnedReadCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        expireAt = new AtomicLongArray(size);
+        mask = size - 1;
+        log.info("写后读一致性窗口: enabled={}, window={} ms, stripes={}", enabled, windowMs, size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录用户的一次写入
+     */
+    public void markWrite(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        int stripe = stripeOf(userId);
+        long deadline = clock.getAsLong() + windowMs;
+        long current;
+        do {
+            current = expireAt.get(stripe);
+            if (current >= deadline) {
+                break;
+            }
+        } while (!expireAt.compareAndSet(stripe, current, deadline));
+        writeCount.incrementAndGet();
+    }
+
+    /**
+     * 用户是否处于写后读窗口内
+     * @param userId 为 null 时使用当前请求绑定的用户
+     */
+    public boolean isPinned(Long userId) {
+        if (!enabled) {
+            return false;
+        }
+        Long user = userId != null ? userId : SESSION_USER.get();
+        if (user == null) {
+            return false;
+        }
+        boolean pinned = clock.getAsLong() < expireAt.get(stripeOf(user));
+        if (pinned) {
+            pinnedReadCount.incrementAndGet();
+        }
+        return pinned;
+    }
+
+    /**
+     * 记录当前请求绑定用户的一次写入
+     */
+    public void markSessionWrite() {
+        markWrite(SESSION_USER.get());
+    }
+
+    public void bindSessionUser(Long userId) {
+        SESSION_USER.set(userId);
+    }
+
+    public void clearSessionUser() {
+        SESSION_USER.remove();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("windowMs", windowMs);
+        statistics.put("stripes", expireAt.length());
+        statistics.put("writeCount", writeCount.get());
+        statistics.put("pinnedReadCount", pinnedReadCount.get());
+        return statistics;
+    }
+
+    private int stripeOf(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
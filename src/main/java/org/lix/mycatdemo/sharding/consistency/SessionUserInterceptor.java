@@ -0,0 +1,43 @@
+package org.lix.mycatdemo.sharding.consistency;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 把请求的用户绑定到 ReadYourWritesTracker：优先取请求头 X-User-Id，其次取请求参数 userId
+ */
+@Component
+public class SessionUserInterceptor implements HandlerInterceptor {
+
+    private static final String USER_HEADER = "X-User-Id";
+
+    private static final String USER_PARAMETER = "userId";
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userId = request.getHeader(USER_HEADER);
+        if (userId == null || userId.isEmpty()) {
+            userId = request.getParameter(USER_PARAMETER);
+        }
+        if (userId != null && !userId.isEmpty()) {
+            try {
+                readYourWritesTracker.bindSessionUser(Long.parseLong(userId.trim()));
+            } catch (NumberFormatException e) {
+                // 非数字的用户标识不参与写后读路由
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        readYourWritesTracker.clearSessionUser();
+    }
+}
@@ -0,0 +1,135 @@
+package org.lix.mycatdemo.sharding.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * XXX 观察实际数据源上每次 execute* 的耗时和异常
+ * 连接和语句都用 JDK 动态代理，只有 execute 开头的方法和 Connection.close 多一次回调，其余方法直接转发
+ * 关闭、调整连接池时需要先取出被包装的数据源（DelegatingDataSource.getTargetDataSource）
+ */
+public abstract class ExecutionObservingDataSource extends DelegatingDataSource {
+
+    protected ExecutionObservingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    /**
+     * execute* 执行之前
+     */
+    protected abstract void beforeExecute();
+
+    /**
+     * execute* 执行之后
+     * @param costNanos 耗时
+     * @param error 执行成功时为 null
+     */
+    protected abstract void afterExecute(long costNanos, Throwable error);
+
+    /**
+     * execute* 执行之后，需要区分 executeQuery、executeBatch 等方法时覆盖
+     * @param methodName 执行的方法名
+     */
+    protected void afterExecute(String methodName, long costNanos, Throwable error) {
+        afterExecute(costNanos, error);
+    }
+
+    /**
+     * 连接关闭（归还连接池）之后，每个连接只回调一次
+     */
+    protected void onConnectionClosed() {
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    return ExecutionObservingDataSource.invoke(target, method, args);
+                } finally {
+                    if (closed.compareAndSet(false, true)) {
+                        onConnectionClosed();
+                    }
+                }
+            }
+            Object result = ExecutionObservingDataSource.invoke(target, method, args);
+            if (result instanceof Statement) {
+                Class<?> statementType = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(statementType.getClassLoader(), new Class<?>[]{statementType},
+                        new StatementHandler((Statement) result));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+
+        private StatementHandler(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return ExecutionObservingDataSource.invoke(target, method, args);
+            }
+            beforeExecute();
+            long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                return ExecutionObservingDataSource.invoke(target, method, args);
+            } catch (Throwable t) {
+                error = t;
+                throw t;
+            } finally {
+                afterExecute(method.getName(), System.nanoTime() - start, error);
+            }
+        }
+    }
+}
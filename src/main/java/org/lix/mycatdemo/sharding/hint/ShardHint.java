@@ -0,0 +1,36 @@
+package org.lix.mycatdemo.sharding.hint;
+
+import java.lang.annotation.*;
+
+/**
+ * XXX 声明在 Mapper 方法上，由 ShardHintInterceptor 在执行 SQL 前按方法参数设置 HintManager
+ * 1. masterOnly：强制走主库，对所有表生效，可用于写后立即读
+ * 2. database / table：参数名（支持 @Param 名称和 a.b 属性路径），参数值作为分库/分表的强制路由值
+ *    只有分库、分表策略都配置为 hint 的逻辑表才会使用这些值（如 t_order_by_gene），路由时不再从 SQL 条件中提取分片值
+ * 线程上已经存在 HintManager 时以外层设置为准
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardHint {
+
+    /**
+     * database / table 路由值作用的逻辑表
+     */
+    String logicTable() default "";
+
+    /**
+     * 提供分库路由值的参数名，为空表示不设置
+     */
+    String database() default "";
+
+    /**
+     * 提供分表路由值的参数名，为空表示不设置
+     */
+    String table() default "";
+
+    /**
+     * 是否强制走主库
+     */
+    boolean masterOnly() default false;
+}
@@ -0,0 +1,187 @@
+package org.lix.mycatdemo.sharding.hint;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.shardingsphere.api.hint.HintManager;
+import org.lix.mycatdemo.sharding.consistency.ReadYourWritesTracker;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * XXX 处理 Mapper 方法上的 @ShardHint
+ * 拦截 Executor 的 query / update，按 MappedStatement 的 id 找到 Mapper 方法（结果按 id 缓存），
+ * 在本次执行期间打开 HintManager，执行结束后关闭
+ * 没有注解的语句：当前请求用户处于写后读窗口时查询强制走主库，写入成功后记录该用户的写入
+ * 由 mybatis-spring-boot-starter 自动注册到 SqlSessionFactory
+ */
+@Slf4j
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class ShardHintInterceptor implements Interceptor {
+
+    /**
+     * MappedStatement id → 方法上的注解，没有注解时为 empty
+     */
+    private final Map<String, Optional<ShardHint>> hintCache = new ConcurrentHashMap<>();
+
+    @Resource
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    private final AtomicLong hintedCount = new AtomicLong(0);
+    private final AtomicLong nestedCount = new AtomicLong(0);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        Optional<ShardHint> shardHint = hintCache.computeIfAbsent(mappedStatement.getId(), this::findHint);
+        if (!shardHint.isPresent()) {
+            return proceedWithSession(invocation, mappedStatement);
+        }
+
+        HintManager hintManager;
+        try {
+            hintManager = HintManager.getInstance();
+        } catch (IllegalStateException e) {
+            // 外层已经设置了 HintManager（包括本拦截器的嵌套调用），不覆盖
+            nestedCount.incrementAndGet();
+            return invocation.proceed();
+        }
+        try {
+            apply(hintManager, shardHint.get(), invocation.getArgs()[1]);
+            hintedCount.incrementAndGet();
+            return invocation.proceed();
+        } finally {
+            hintManager.close();
+        }
+    }
+
+    /**
+     * 按当前请求用户的写后读窗口处理未声明 @ShardHint 的语句
+     */
+    private Object proceedWithSession(Invocation invocation, MappedStatement mappedStatement) throws Throwable {
+        if (!readYourWritesTracker.isEnabled()) {
+            return invocation.proceed();
+        }
+        if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT) {
+            Object result = invocation.proceed();
+            readYourWritesTracker.markSessionWrite();
+            return result;
+        }
+        if (!readYourWritesTracker.isPinned(null)) {
+            return invocation.proceed();
+        }
+        HintManager hintManager;
+        try {
+            hintManager = HintManager.getInstance();
+        } catch (IllegalStateException e) {
+            nestedCount.incrementAndGet();
+            return invocation.proceed();
+        }
+        try {
+            hintManager.setMasterRouteOnly();
+            return invocation.proceed();
+        } finally {
+            hintManager.close();
+        }
+    }
+
+    public long getHintedCount() {
+        return hintedCount.get();
+    }
+
+    public long getNestedCount() {
+        return nestedCount.get();
+    }
+
+    private void apply(HintManager hintManager, ShardHint shardHint, Object parameter) {
+        if (shardHint.logicTable().isEmpty() && (!shardHint.database().isEmpty() || !shardHint.table().isEmpty())) {
+            throw new IllegalArgumentException("@ShardHint 设置了 database / table 时必须指定 logicTable");
+        }
+        if (shardHint.masterOnly()) {
+            hintManager.setMasterRouteOnly();
+        }
+        if (!shardHint.database().isEmpty()) {
+            for (Comparable<?> value : resolveValues(parameter, shardHint.database())) {
+                hintManager.addDatabaseShardingValue(shardHint.logicTable(), value);
+            }
+        }
+        if (!shardHint.table().isEmpty()) {
+            for (Comparable<?> value : resolveValues(parameter, shardHint.table())) {
+                hintManager.addTableShardingValue(shardHint.logicTable(), value);
+            }
+        }
+    }
+
+    /**
+     * 从 MyBatis 参数对象中取出路由值：集合参数展开为多个值
+     */
+    private Collection<Comparable<?>> resolveValues(Object parameter, String name) {
+        Object value;
+        if (parameter instanceof Comparable && !(parameter instanceof Map)) {
+            // 单个无 @Param 的简单类型参数
+            value = parameter;
+        } else {
+            MetaObject metaObject = SystemMetaObject.forObject(parameter);
+            if (!metaObject.hasGetter(name)) {
+                throw new IllegalArgumentException("@ShardHint 参数不存在: " + name);
+            }
+            value = metaObject.getValue(name);
+        }
+        List<Comparable<?>> values = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                values.add((Comparable<?>) item);
+            }
+        } else if (value != null) {
+            values.add((Comparable<?>) value);
+        }
+        return values;
+    }
+
+    private Optional<ShardHint> findHint(String mappedStatementId) {
+        int index = mappedStatementId.lastIndexOf('.');
+        if (index < 0) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> mapperClass = ClassUtils.forName(mappedStatementId.substring(0, index), ClassUtils.getDefaultClassLoader());
+            String methodName = mappedStatementId.substring(index + 1);
+            for (Method method : mapperClass.getMethods()) {
+                ShardHint shardHint = method.getAnnotation(ShardHint.class);
+                if (shardHint != null && method.getName().equals(methodName)) {
+                    log.info("Mapper 方法 {} 使用 @ShardHint: {}", mappedStatementId, shardHint);
+                    return Optional.of(shardHint);
+                }
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            // selectKey 等内部语句或非接口命名空间
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,114 @@
+package org.lix.mycatdemo.sharding.keygen;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.shardingsphere.spi.keygen.ShardingKeyGenerator;
+import org.lix.mycatdemo.sharding.ShardGene;
+
+import java.util.Properties;
+
+/**
+ * XXX 带分片基因的主键生成器，key-generator.type: SHARD_GENE
+ *
+ * 64 位布局：| 符号位(1) | 时间戳(41) | worker.id(8) | 序列号(14 - 基因位数) | 基因 |
+ * 基因取自 ShardGene.callWithUser 指定的 user_id，没有 user_id 时拒绝生成，避免订单落到与用户不一致的分片
+ *
+ * props:
+ *   worker.id: 0 ~ 255，默认 0
+ *   max.tolerate.time.difference.milliseconds: 时钟回拨容忍时间，默认 10
+ */
+@Getter
+@Setter
+public final class ShardGeneKeyGenerator implements ShardingKeyGenerator {
+
+    /**
+     * 2024-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int WORKER_ID_BITS = 8;
+
+    private static final int SEQUENCE_BITS = 14 - ShardGene.GENE_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int SEQUENCE_SHIFT = ShardGene.GENE_BITS;
+
+    private static final int WORKER_ID_SHIFT = SEQUENCE_SHIFT + SEQUENCE_BITS;
+
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_SHIFT + WORKER_ID_BITS;
+
+    private Properties properties = new Properties();
+
+    private long sequence;
+
+    private long lastMillis;
+
+    static {
+        if (SEQUENCE_BITS < 4) {
+            throw new IllegalStateException("sharding.gene.bits 过大，序列号位数不足: " + ShardGene.GENE_BITS);
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "SHARD_GENE";
+    }
+
+    @Override
+    public synchronized Comparable<?> generateKey() {
+        Long userId = ShardGene.currentUserId();
+        if (userId == null) {
+            throw new IllegalStateException("生成 SHARD_GENE 主键前需要通过 ShardGene.callWithUser 指定 user_id");
+        }
+
+        long currentMillis = System.currentTimeMillis();
+        if (currentMillis < lastMillis) {
+            long difference = lastMillis - currentMillis;
+            if (difference > getMaxTolerateTimeDifferenceMillis()) {
+                throw new IllegalStateException("时钟回拨 " + difference + " ms，超过容忍时间，拒绝生成主键");
+            }
+            try {
+                Thread.sleep(difference);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待时钟追上时被中断", e);
+            }
+            currentMillis = System.currentTimeMillis();
+        }
+        if (currentMillis == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                currentMillis = waitUntilNextMillis(currentMillis);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = currentMillis;
+
+        return ((currentMillis - EPOCH) << TIMESTAMP_SHIFT)
+                | (getWorkerId() << WORKER_ID_SHIFT)
+                | (sequence << SEQUENCE_SHIFT)
+                | ShardGene.geneOf(userId);
+    }
+
+    private long waitUntilNextMillis(long lastTime) {
+        long millis = System.currentTimeMillis();
+        while (millis <= lastTime) {
+            millis = System.currentTimeMillis();
+        }
+        return millis;
+    }
+
+    private long getWorkerId() {
+        long workerId = Long.parseLong(properties.getProperty("worker.id", "0"));
+        if (workerId < 0 || workerId >= (1L << WORKER_ID_BITS)) {
+            throw new IllegalArgumentException("worker.id 需在 0 到 " + ((1L << WORKER_ID_BITS) - 1) + " 之间: " + workerId);
+        }
+        return workerId;
+    }
+
+    private long getMaxTolerateTimeDifferenceMillis() {
+        return Long.parseLong(properties.getProperty("max.tolerate.time.difference.milliseconds", "10"));
+    }
+}
@@ -0,0 +1,54 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.shardingsphere.spi.masterslave.MasterSlaveLoadBalanceAlgorithm;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * XXX 按查询耗时选择从库，load-balance-algorithm-type: EWMA_P2C
+ * 随机取两个从库，选择负载分数（耗时 EWMA × (进行中的查询数 + 1)）较小的一个（power of two choices）
+ * 每次路由只读取两个从库的统计，开销与从库数量无关；还没有样本的从库分数为 0，会被优先探索
+ * 统计来自 LatencyTrackingDataSource，从库数据源没有被包装时退化为随机；EWMA 随空闲时间衰减，偶尔变慢的从库不会一直分不到流量
+ */
+@Getter
+@Setter
+public final class EwmaP2cLoadBalanceAlgorithm implements MasterSlaveLoadBalanceAlgorithm {
+
+    public static final String TYPE = "EWMA_P2C";
+
+    private Properties properties = new Properties();
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public String getDataSource(String name, String masterDataSourceName, List<String> slaveDataSourceNames) {
+        int size = slaveDataSourceNames.size();
+        if (size == 0) {
+            return masterDataSourceName;
+        }
+        if (size == 1) {
+            return slaveDataSourceNames.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        String firstName = slaveDataSourceNames.get(first);
+        String secondName = slaveDataSourceNames.get(second);
+        return scoreOf(firstName) <= scoreOf(secondName) ? firstName : secondName;
+    }
+
+    private double scoreOf(String dataSourceName) {
+        ReplicaLatencyRegistry.Stats stats = ReplicaLatencyRegistry.get(dataSourceName);
+        return stats == null ? 0 : stats.score();
+    }
+}
@@ -0,0 +1,423 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * XXX 对冲读：只用于幂等的 SELECT
+ * 1. 先在主从规则的负载均衡算法选出的从库上执行；超过该主从组最近查询耗时的 p95 仍未返回时，
+ * 排除第一个从库后再由算法选一个从库执行一次，算法不接受其余从库（例如延迟过大、返回主库）时不对冲
+ * 2. 先返回的结果生效，另一个通过 Statement.cancel() 取消，被取消的一方以已执行时间作为下限计入耗时样本
+ * 3. 对冲次数受预算限制：每次查询积累 budget-percent% 个令牌，对冲消耗一个，令牌上限 budget-burst 个
+ * 未开启或主从组只有一个从库时直接在读库上执行
+ */
+@Slf4j
+@Component
+public class HedgedReadExecutor {
+
+    @Value("${order.hedge.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.hedge.budget-percent:5}")
+    private int budgetPercent;
+
+    @Value("${order.hedge.budget-burst:10}")
+    private int budgetBurst;
+
+    /**
+     * 样本不足时使用的对冲等待时间
+     */
+    @Value("${order.hedge.initial-delay-ms:50}")
+    private long initialDelayMs;
+
+    @Value("${order.hedge.min-delay-ms:2}")
+    private long minDelayMs;
+
+    /**
+     * 每个主从组保留的最近耗时样本数
+     */
+    @Value("${order.hedge.window-size:256}")
+    private int windowSize;
+
+    @Value("${order.hedge.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${order.hedge.parallelism:16}")
+    private int parallelism;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    private ExecutorService hedgeExecutor;
+
+    /**
+     * 主从组名称 → 最近耗时
+     */
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private HedgeBudget budget;
+
+    private final AtomicLong queryCount = new AtomicLong(0);
+    private final AtomicLong hedgedCount = new AtomicLong(0);
+    private final AtomicLong hedgeWinCount = new AtomicLong(0);
+    private final AtomicLong budgetExhaustedCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        budget = new HedgeBudget(budgetPercent, budgetBurst);
+        AtomicInteger index = new AtomicInteger(0);
+        // 每次对冲查询最多占用两个线程，排队会抵消对冲的意义，线程不足时直接拒绝
+        hedgeExecutor = new ThreadPoolExecutor(parallelism, parallelism * 2, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "hedged-read-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 在逻辑数据源的读库上执行查询
+     * @param dataSourceName 逻辑数据源（主从规则名称或物理数据源名称）
+     * @param sql 只读 SQL
+     * @param setter 设置参数
+     * @param extractor 读取结果，可能因为对冲被执行两次，不能有副作用
+     */
+    public <T> T query(String dataSourceName, String sql, PreparedStatementSetter setter,
+                       ResultSetExtractor<T> extractor) throws SQLException {
+        List<String> readNames = shardingRuntime.getReadDataSourceNames(dataSourceName);
+        if (!enabled || readNames.size() < 2) {
+            return queryOnce(shardingRuntime.getReadDataSource(dataSourceName), sql, setter, extractor, null);
+        }
+
+        String primaryName = shardingRuntime.getReadDataSourceName(dataSourceName);
+        if (!readNames.contains(primaryName)) {
+            // 算法认为从库都不可用，已经退回主库
+            return queryOnce(shardingRuntime.getPhysicalDataSource(primaryName), sql, setter, extractor, null);
+        }
+
+        queryCount.incrementAndGet();
+        budget.add();
+        LatencyWindow window = windows.computeIfAbsent(dataSourceName, k -> new LatencyWindow(windowSize));
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Attempt<T> primary = new Attempt<>(primaryName, sql, setter, extractor, result, pending, error, window);
+        Attempt<T> hedge = null;
+        try {
+            hedgeExecutor.execute(primary);
+        } catch (RejectedExecutionException e) {
+            return queryOnce(shardingRuntime.getPhysicalDataSource(primaryName), sql, setter, extractor, null);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            try {
+                return result.get(window.hedgeDelayMillis(initialDelayMs, minDelayMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 主查询超过 p95 仍未返回，尝试对冲
+            }
+            String hedgeName = shardingRuntime.getReadDataSourceName(dataSourceName, Collections.singleton(primaryName));
+            if (readNames.contains(hedgeName)) {
+                hedge = new Attempt<>(hedgeName, sql, setter, extractor, result, pending, error, window);
+            }
+            if ((hedge == null || !launchHedge(hedge)) && pending.decrementAndGet() <= 0) {
+                // 主查询已经失败且不再对冲
+                result.completeExceptionally(error.get());
+            }
+            T value = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (hedge != null && hedge.isWinner()) {
+                hedgeWinCount.incrementAndGet();
+            }
+            return value;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new SQLException("对冲读超时: " + dataSourceName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("对冲读被中断: " + dataSourceName, e);
+        } finally {
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("queryCount", queryCount.get());
+        statistics.put("hedgedCount", hedgedCount.get());
+        statistics.put("hedgeWinCount", hedgeWinCount.get());
+        statistics.put("budgetExhaustedCount", budgetExhaustedCount.get());
+        statistics.put("budgetAvailable", budget.available());
+        Map<String, Object> delays = new LinkedHashMap<>();
+        Map<String, Object> censored = new LinkedHashMap<>();
+        windows.forEach((name, window) -> {
+            delays.put(name, window.hedgeDelayMillis(initialDelayMs, minDelayMs));
+            censored.put(name, window.getCensoredCount());
+        });
+        statistics.put("hedgeDelayMillis", delays);
+        statistics.put("censoredSamples", censored);
+        return statistics;
+    }
+
+    private boolean launchHedge(Attempt<?> hedge) {
+        if (!budget.tryAcquire()) {
+            budgetExhaustedCount.incrementAndGet();
+            return false;
+        }
+        try {
+            hedgeExecutor.execute(hedge);
+            hedgedCount.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            budget.refund();
+            return false;
+        }
+    }
+
+    private <T> T queryOnce(DataSource dataSource, String sql, PreparedStatementSetter setter,
+                            ResultSetExtractor<T> extractor, Attempt<T> attempt) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (attempt != null && !attempt.register(ps)) {
+                throw new SQLException("查询已被取消");
+            }
+            setter.setValues(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return extractor.extractData(rs);
+            }
+        }
+    }
+
+    /**
+     * 在一个从库上的一次执行
+     */
+    private class Attempt<T> implements Runnable {
+
+        private final String physicalName;
+        private final String sql;
+        private final PreparedStatementSetter setter;
+        private final ResultSetExtractor<T> extractor;
+        private final CompletableFuture<T> result;
+
+        /**
+         * 还可能完成 result 的执行次数，归零时以最后一个异常结束
+         */
+        private final AtomicInteger pending;
+        private final AtomicReference<Throwable> error;
+        private final LatencyWindow window;
+
+        private volatile PreparedStatement statement;
+        private volatile boolean cancelled;
+        private volatile boolean started;
+        private volatile boolean winner;
+
+        private Attempt(String physicalName, String sql, PreparedStatementSetter setter, ResultSetExtractor<T> extractor,
+                        CompletableFuture<T> result, AtomicInteger pending, AtomicReference<Throwable> error,
+                        LatencyWindow window) {
+            this.physicalName = physicalName;
+            this.sql = sql;
+            this.setter = setter;
+            this.extractor = extractor;
+            this.result = result;
+            this.pending = pending;
+            this.error = error;
+            this.window = window;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                T value = queryOnce(shardingRuntime.getPhysicalDataSource(physicalName), sql, setter, extractor, this);
+                window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                // 先标记再完成，调用方被唤醒时能看到谁是胜者
+                winner = true;
+                if (!result.complete(value)) {
+                    winner = false;
+                }
+            } catch (Throwable t) {
+                if (cancelled) {
+                    if (started) {
+                        // 输给了另一个从库，真实耗时至少是已执行的时间
+                        window.recordCensored(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                } else {
+                    log.debug("从库 {} 查询失败", physicalName, t);
+                }
+                error.set(t);
+                if (pending.decrementAndGet() <= 0) {
+                    result.completeExceptionally(t);
+                }
+                return;
+            } finally {
+                statement = null;
+            }
+            pending.decrementAndGet();
+        }
+
+        /**
+         * @return false 表示已经被取消，不需要再执行
+         */
+        private boolean register(PreparedStatement ps) {
+            statement = ps;
+            started = !cancelled;
+            return started;
+        }
+
+        private boolean isWinner() {
+            return winner;
+        }
+
+        /**
+         * 取消仍在执行的查询；已完成或未开始的查询不受影响
+         */
+        private void cancel() {
+            if (winner) {
+                return;
+            }
+            cancelled = true;
+            PreparedStatement ps = statement;
+            if (ps != null) {
+                try {
+                    ps.cancel();
+                } catch (SQLException | RuntimeException e) {
+                    log.debug("取消从库 {} 的查询失败: {}", physicalName, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近若干次查询耗时，按需计算 p95，每 32 个新样本重新计算一次
+     * 被取消的查询只知道耗时的下限（删失样本），按下限计入：直接丢弃会让慢查询不留样本，p95 系统性偏低
+     */
+    static class LatencyWindow {
+
+        private static final int MIN_SAMPLES = 20;
+
+        private static final int RECOMPUTE_INTERVAL = 32;
+
+        private final long[] samples;
+
+        private int count;
+
+        private int next;
+
+        private long censoredCount;
+
+        private volatile long p95 = -1;
+
+        LatencyWindow(int size) {
+            this.samples = new long[Math.max(MIN_SAMPLES, size)];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count++;
+            if (count == MIN_SAMPLES || (count > MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0)) {
+                int size = Math.min(count, samples.length);
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                p95 = sorted[Math.min(size - 1, (int) Math.ceil(size * 0.95) - 1)];
+            }
+        }
+
+        /**
+         * @param lowerBoundMillis 被取消前已执行的时间
+         */
+        synchronized void recordCensored(long lowerBoundMillis) {
+            censoredCount++;
+            record(lowerBoundMillis);
+        }
+
+        synchronized long getCensoredCount() {
+            return censoredCount;
+        }
+
+        long hedgeDelayMillis(long initialDelayMs, long minDelayMs) {
+            long current = p95;
+            return current < 0 ? initialDelayMs : Math.max(minDelayMs, current);
+        }
+    }
+
+    /**
+     * 对冲预算：每次查询积累 percent% 个令牌，对冲消耗一个，最多积累 burst 个
+     */
+    static class HedgeBudget {
+
+        /**
+         * 令牌按千分之一计数，避免浮点运算
+         */
+        private static final long TOKEN = 1000;
+
+        private final long add;
+
+        private final long cap;
+
+        private final AtomicLong tokens = new AtomicLong(0);
+
+        HedgeBudget(int percent, int burst) {
+            this.add = percent * TOKEN / 100;
+            this.cap = burst * TOKEN;
+        }
+
+        void add() {
+            tokens.accumulateAndGet(add, (current, delta) -> Math.min(cap, current + delta));
+        }
+
+        boolean tryAcquire() {
+            long current;
+            do {
+                current = tokens.get();
+                if (current < TOKEN) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - TOKEN));
+            return true;
+        }
+
+        /**
+         * 对冲没有真正发出时退回令牌
+         */
+        void refund() {
+            tokens.accumulateAndGet(TOKEN, (current, delta) -> Math.min(cap, current + delta));
+        }
+
+        /**
+         * @return 当前可用的对冲次数
+         */
+        double available() {
+            return tokens.get() / (double) TOKEN;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import org.lix.mycatdemo.sharding.datasource.ExecutionObservingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * XXX 包装从库数据源，统计每次 execute* 的耗时和进行中的查询数，写入 ReplicaLatencyRegistry
+ */
+public class LatencyTrackingDataSource extends ExecutionObservingDataSource {
+
+    private final String name;
+
+    private final ReplicaLatencyRegistry.Stats stats;
+
+    public LatencyTrackingDataSource(String name, DataSource targetDataSource) {
+        super(targetDataSource);
+        this.name = name;
+        this.stats = ReplicaLatencyRegistry.statsOf(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected void beforeExecute() {
+        stats.begin();
+    }
+
+    @Override
+    protected void afterExecute(long costNanos, Throwable error) {
+        stats.end(costNanos);
+    }
+}
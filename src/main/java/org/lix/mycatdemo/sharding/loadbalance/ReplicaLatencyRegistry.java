@@ -0,0 +1,111 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 从库的查询耗时 EWMA 和进行中的查询数，由 LatencyTrackingDataSource 写入，EWMA_P2C 负载均衡算法读取
+ * EWMA 平滑系数可通过 JVM 参数调整：-Dsharding.replica.ewma.alpha=0.2
+ * EWMA 按距上次样本的时间指数衰减（peak-EWMA），衰减时间常数：-Dsharding.replica.ewma.decay-ms=10000
+ * 一次变慢后分数偏高、分不到查询的从库，会随时间回落并重新得到流量，而不是一直被饿死
+ */
+public final class ReplicaLatencyRegistry {
+
+    private static final double ALPHA = Double.parseDouble(System.getProperty("sharding.replica.ewma.alpha", "0.2"));
+
+    private static final double DECAY_NANOS = Long.getLong("sharding.replica.ewma.decay-ms", 10_000L) * 1_000_000D;
+
+    /**
+     * 物理数据源名称 → 统计
+     */
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+
+    private ReplicaLatencyRegistry() {
+    }
+
+    public static Stats statsOf(String dataSourceName) {
+        return STATS.computeIfAbsent(dataSourceName, k -> new Stats());
+    }
+
+    /**
+     * @return 没有统计时返回 null
+     */
+    public static Stats get(String dataSourceName) {
+        return STATS.get(dataSourceName);
+    }
+
+    public static Map<String, Stats> snapshot() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    public static final class Stats {
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+
+        /**
+         * EWMA（纳秒）的 double 位表示，0 表示还没有样本
+         */
+        private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+        private final AtomicLong sampleCount = new AtomicLong(0);
+
+        /**
+         * 最近一次样本的 System.nanoTime()
+         */
+        private volatile long lastSampleNanos = System.nanoTime();
+
+        private Stats() {
+        }
+
+        public void begin() {
+            inFlight.incrementAndGet();
+        }
+
+        public void end(long costNanos) {
+            inFlight.decrementAndGet();
+            sampleCount.incrementAndGet();
+            long now = System.nanoTime();
+            long current;
+            double next;
+            do {
+                current = ewmaBits.get();
+                double ewma = decay(Double.longBitsToDouble(current), now);
+                next = ewma == 0 ? costNanos : ewma + ALPHA * (costNanos - ewma);
+            } while (!ewmaBits.compareAndSet(current, Double.doubleToRawLongBits(next)));
+            lastSampleNanos = now;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return 按距上次样本的时间衰减后的 EWMA
+         */
+        public double getEwmaNanos() {
+            return decay(Double.longBitsToDouble(ewmaBits.get()), System.nanoTime());
+        }
+
+        public long getSampleCount() {
+            return sampleCount.get();
+        }
+
+        /**
+         * 负载分数：EWMA × (进行中的查询数 + 1)，越小越空闲
+         */
+        public double score() {
+            return getEwmaNanos() * (getInFlight() + 1);
+        }
+
+        private double decay(double ewma, long now) {
+            long idleNanos = now - lastSampleNanos;
+            if (ewma == 0 || idleNanos <= 0) {
+                return ewma;
+            }
+            return ewma * Math.exp(-idleNanos / DECAY_NANOS);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.shardingsphere.spi.masterslave.MasterSlaveLoadBalanceAlgorithm;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * XXX 按复制延迟选择从库，load-balance-algorithm-type: REPLICATION_LAG
+ *
+ * 1. 延迟不超过 soft.lag.milliseconds 的从库权重为 1
+ * 2. 超过后权重线性下降，到 max.lag.milliseconds 时为 0.1
+ * 3. 超过 max.lag.milliseconds 或无法复制的从库不参与选择，全部不可用时读主库
+ * 4. 从未采样的从库（如未开启延迟探测）按权重 1 处理
+ * 5. 采样早于 sample.ttl.milliseconds 的从库说明探测一直失败（宕机、缺少 REPLICATION CLIENT 权限），不参与选择
+ *
+ * props:
+ *   soft.lag.milliseconds: 默认 1000
+ *   max.lag.milliseconds: 默认 5000
+ *   sample.ttl.milliseconds: 默认 10000
+ */
+@Getter
+@Setter
+public final class ReplicationLagLoadBalanceAlgorithm implements MasterSlaveLoadBalanceAlgorithm {
+
+    private static final double MIN_WEIGHT = 0.1;
+
+    private Properties properties = new Properties();
+
+    @Override
+    public String getType() {
+        return "REPLICATION_LAG";
+    }
+
+    @Override
+    public String getDataSource(String name, String masterDataSourceName, List<String> slaveDataSourceNames) {
+        long softLag = getLongProperty("soft.lag.milliseconds", 1000L);
+        long maxLag = Math.max(softLag, getLongProperty("max.lag.milliseconds", 5000L));
+        long sampleTtl = getLongProperty("sample.ttl.milliseconds", 10000L);
+        long now = System.currentTimeMillis();
+
+        double[] weights = new double[slaveDataSourceNames.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weightOf(ReplicationLagRegistry.get(slaveDataSourceNames.get(i)), softLag, maxLag, sampleTtl, now);
+            totalWeight += weights[i];
+        }
+        if (totalWeight <= 0) {
+            return masterDataSourceName;
+        }
+
+        double random = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (int i = 0; i < weights.length; i++) {
+            random -= weights[i];
+            if (random < 0 && weights[i] > 0) {
+                return slaveDataSourceNames.get(i);
+            }
+        }
+        // 浮点误差兜底：返回最后一个可用从库
+        for (int i = weights.length - 1; i >= 0; i--) {
+            if (weights[i] > 0) {
+                return slaveDataSourceNames.get(i);
+            }
+        }
+        return masterDataSourceName;
+    }
+
+    private double weightOf(ReplicationLagRegistry.Sample sample, long softLag, long maxLag, long sampleTtl, long now) {
+        if (sample == null) {
+            return 1;
+        }
+        if (now - sample.getSampledAt() > sampleTtl) {
+            return 0;
+        }
+        long lag = sample.getLagMillis();
+        if (lag <= softLag) {
+            return 1;
+        }
+        if (lag > maxLag) {
+            return 0;
+        }
+        return 1 - (1 - MIN_WEIGHT) * (lag - softLag) / (double) (maxLag - softLag);
+    }
+
+    private long getLongProperty(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,104 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.core.rule.MasterSlaveRule;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * XXX 后台探测每个从库的复制延迟，写入 ReplicationLagRegistry
+ * 通过 SHOW SLAVE STATUS 的 Seconds_Behind_Master 取值（秒级精度），需要 REPLICATION CLIENT 权限
+ * Seconds_Behind_Master 为 NULL（复制线程停止）或结果为空（不是从库）时视为无法复制
+ * 探测失败时不写入采样，算法在采样过期后按未知处理
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.replica.lag-probe.enabled", havingValue = "true", matchIfMissing = true)
+public class ReplicationLagMonitor {
+
+    @Value("${order.replica.lag-probe.query-timeout-seconds:1}")
+    private int queryTimeoutSeconds;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    /**
+     * 已经告警过的探测失败数据源，避免每次探测都打印堆栈
+     */
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    @Scheduled(initialDelayString = "${order.replica.lag-probe.interval-ms:1000}",
+            fixedDelayString = "${order.replica.lag-probe.interval-ms:1000}")
+    public void probe() {
+        try {
+            for (MasterSlaveRule masterSlaveRule : shardingRuntime.getShardingRule().getMasterSlaveRules()) {
+                for (String slaveName : masterSlaveRule.getSlaveDataSourceNames()) {
+                    probe(slaveName);
+                }
+            }
+        } catch (Exception e) {
+            // 数据源刷新期间可能短暂拿不到 ShardingDataSource
+            log.debug("复制延迟探测跳过: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        ReplicationLagRegistry.snapshot().forEach((name, sample) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("lagMillis", sample.getLagMillis() == ReplicationLagRegistry.BROKEN ? "BROKEN" : sample.getLagMillis());
+            item.put("ageMillis", now - sample.getSampledAt());
+            statistics.put(name, item);
+        });
+        return statistics;
+    }
+
+    private void probe(String slaveName) {
+        try (Connection connection = unwrap(shardingRuntime.getPhysicalDataSource(slaveName)).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            long lagMillis = ReplicationLagRegistry.BROKEN;
+            try (ResultSet rs = statement.executeQuery("SHOW SLAVE STATUS")) {
+                if (rs.next()) {
+                    long seconds = rs.getLong("Seconds_Behind_Master");
+                    if (!rs.wasNull()) {
+                        lagMillis = seconds * 1000;
+                    }
+                }
+            }
+            ReplicationLagRegistry.record(slaveName, lagMillis);
+            warned.remove(slaveName);
+        } catch (SQLException | RuntimeException e) {
+            if (warned.add(slaveName)) {
+                log.warn("探测从库 {} 的复制延迟失败", slaveName, e);
+            }
+        }
+    }
+
+    /**
+     * 探测直接走连接池，不计入 LatencyTrackingDataSource 的耗时统计，也不占用 ShardGuardDataSource 的并发额度
+     */
+    private static DataSource unwrap(DataSource dataSource) {
+        DataSource target = dataSource;
+        while (target instanceof DelegatingDataSource) {
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,60 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 从库复制延迟的最新采样，由 ReplicationLagMonitor 写入，SPI 加载的负载均衡算法读取
+ * 负载均衡算法由 ShardingSphere 通过 SPI 实例化，拿不到 Spring Bean，因此用静态注册表传递
+ */
+public final class ReplicationLagRegistry {
+
+    /**
+     * 无法复制（复制线程停止、不是从库）时的延迟值
+     */
+    public static final long BROKEN = Long.MAX_VALUE;
+
+    /**
+     * 物理数据源名称 → 采样
+     */
+    private static final Map<String, Sample> SAMPLES = new ConcurrentHashMap<>();
+
+    private ReplicationLagRegistry() {
+    }
+
+    public static void record(String dataSourceName, long lagMillis) {
+        SAMPLES.put(dataSourceName, new Sample(lagMillis, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return 没有采样时返回 null
+     */
+    public static Sample get(String dataSourceName) {
+        return SAMPLES.get(dataSourceName);
+    }
+
+    public static Map<String, Sample> snapshot() {
+        return Collections.unmodifiableMap(SAMPLES);
+    }
+
+    public static final class Sample {
+
+        private final long lagMillis;
+
+        private final long sampledAt;
+
+        private Sample(long lagMillis, long sampledAt) {
+            this.lagMillis = lagMillis;
+            this.sampledAt = sampledAt;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public long getSampledAt() {
+            return sampledAt;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package org.lix.mycatdemo.sharding.pool;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.lix.mycatdemo.sharding.ShardingRuntime;
+import org.lix.mycatdemo.sharding.resilience.ShardGuardDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * XXX 按负载在线调整每个实际数据源的 Hikari 连接池大小，不重建数据源
+ * 1. 每个周期读取 HikariPoolMXBean 的活跃连接数、等待连接的线程数，以及 PoolAcquireMetrics 记录的获取连接耗时和超时次数；
+ *    开启隔离舱时并发被隔离舱限制在连接池大小以内，连接池几乎不会有线程排队，
+ *    因此再加上隔离舱中等待的线程数、隔离舱等待时间（计入平均获取连接耗时）和本周期被拒绝的次数
+ * 2. 有线程等待、隔离舱有拒绝、获取连接超时、平均等待超过 wait-threshold-ms 或使用率超过 high-usage-percent 时扩容一步；
+ *    使用率连续 shrink-after-intervals 个周期低于 low-usage-percent 时缩容一步
+ * 3. 通过 HikariConfigMXBean 修改 maximumPoolSize / minimumIdle，结果限制在 [min-pool-size, max-pool-size]
+ * 4. 同一个 MySQL 实例（jdbcUrl 的 host:port）上所有连接池的 maximumPoolSize 之和不超过该实例的预算，
+ *    先执行缩容释放预算，再按压力从大到小分配扩容
+ * 每次调整和因预算被拒绝的扩容都打印日志；Nacos 下发的连接池大小仍然生效，之后在其基础上继续调整
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.pool-sizer.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private static final int MAX_DECISIONS = 100;
+
+    @Value("${order.pool-sizer.min-pool-size:2}")
+    private int minPoolSize;
+
+    @Value("${order.pool-sizer.max-pool-size:50}")
+    private int maxPoolSize;
+
+    /**
+     * minimumIdle 占 maximumPoolSize 的百分比
+     */
+    @Value("${order.pool-sizer.min-idle-percent:25}")
+    private int minIdlePercent;
+
+    @Value("${order.pool-sizer.wait-threshold-ms:5}")
+    private double waitThresholdMs;
+
+    @Value("${order.pool-sizer.high-usage-percent:80}")
+    private int highUsagePercent;
+
+    @Value("${order.pool-sizer.low-usage-percent:30}")
+    private int lowUsagePercent;
+
+    /**
+     * 每次扩容/缩容的步长占当前 maximumPoolSize 的百分比，至少 1
+     */
+    @Value("${order.pool-sizer.step-percent:25}")
+    private int stepPercent;
+
+    @Value("${order.pool-sizer.shrink-after-intervals:6}")
+    private int shrinkAfterIntervals;
+
+    /**
+     * 实例预算，格式 host:port=连接数，多个用逗号分隔
+     */
+    @Value("${order.pool-sizer.instance-budgets:}")
+    private String instanceBudgetsConfig;
+
+    /**
+     * 未单独配置的实例的预算，不大于 0 表示不限制
+     */
+    @Value("${order.pool-sizer.default-instance-budget:0}")
+    private int defaultInstanceBudget;
+
+    @Resource
+    private ShardingRuntime shardingRuntime;
+
+    private final Map<String, Integer> instanceBudgets = new HashMap<>();
+
+    /**
+     * 物理数据源名称 → 调整状态，只在调度线程中访问
+     */
+    private final Map<String, PoolState> states = new ConcurrentHashMap<>();
+
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        if (instanceBudgetsConfig != null && !instanceBudgetsConfig.trim().isEmpty()) {
+            for (String item : instanceBudgetsConfig.split(",")) {
+                String[] parts = item.trim().split("=");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("order.pool-sizer.instance-budgets 格式错误: " + item);
+                }
+                instanceBudgets.put(parts[0].trim().toLowerCase(Locale.ROOT), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        log.info("连接池在线调整已开启: 范围 [{}, {}], 实例预算 {}, 默认预算 {}",
+                minPoolSize, maxPoolSize, instanceBudgets, defaultInstanceBudget);
+    }
+
+    @Scheduled(initialDelayString = "${order.pool-sizer.interval-ms:5000}",
+            fixedDelayString = "${order.pool-sizer.interval-ms:5000}")
+    public void adjust() {
+        Map<String, DataSource> dataSourceMap;
+        try {
+            dataSourceMap = shardingRuntime.getShardingDataSource().getDataSourceMap();
+        } catch (Exception e) {
+            // 数据源刷新期间可能短暂拿不到 ShardingDataSource
+            log.debug("连接池调整跳过: {}", e.getMessage());
+            return;
+        }
+        states.keySet().retainAll(dataSourceMap.keySet());
+
+        Map<String, List<PoolState>> byInstance = new TreeMap<>();
+        for (Map.Entry<String, DataSource> entry : dataSourceMap.entrySet()) {
+            PoolState state = sample(entry.getKey(), entry.getValue());
+            if (state != null) {
+                byInstance.computeIfAbsent(state.instance, k -> new ArrayList<>()).add(state);
+            }
+        }
+        byInstance.forEach(this::adjustInstance);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        Map<String, Object> pools = new TreeMap<>();
+        Map<String, Integer> committed = new TreeMap<>();
+        states.forEach((name, state) -> {
+            HikariConfigMXBean config = state.pool.getHikariConfigMXBean();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("instance", state.instance);
+            item.put("maximumPoolSize", config.getMaximumPoolSize());
+            item.put("minimumIdle", config.getMinimumIdle());
+            item.put("active", state.active);
+            item.put("awaiting", state.awaiting);
+            item.put("avgWaitMillis", state.avgWaitMillis);
+            item.put("rejected", state.rejected);
+            item.put("timeouts", state.timeouts);
+            pools.put(name, item);
+            committed.merge(state.instance, config.getMaximumPoolSize(), Integer::sum);
+        });
+        statistics.put("pools", pools);
+        Map<String, Object> budgets = new TreeMap<>();
+        committed.forEach((instance, used) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            int budget = budgetOf(instance);
+            item.put("budget", budget == Integer.MAX_VALUE ? null : budget);
+            item.put("committed", used);
+            budgets.put(instance, item);
+        });
+        statistics.put("instanceBudgets", budgets);
+        synchronized (decisions) {
+            statistics.put("recentDecisions", new ArrayList<>(decisions));
+        }
+        return statistics;
+    }
+
+    /**
+     * 读取一个连接池本周期的负载，不是已启动的 Hikari 连接池时返回 null
+     */
+    private PoolState sample(String name, DataSource dataSource) {
+        ShardGuardDataSource guard = null;
+        DataSource target = dataSource;
+        while (target instanceof DelegatingDataSource) {
+            if (target instanceof ShardGuardDataSource) {
+                guard = (ShardGuardDataSource) target;
+            }
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        if (!(target instanceof HikariDataSource)) {
+            return null;
+        }
+        HikariDataSource pool = (HikariDataSource) target;
+        HikariPoolMXBean poolMXBean = pool.getHikariPoolMXBean();
+        if (pool.isClosed() || poolMXBean == null) {
+            return null;
+        }
+        // 全量刷新后同名数据源换成了新的连接池，状态重新开始
+        PoolState state = states.compute(name, (k, old) -> old == null || old.pool != pool ? new PoolState(name, pool) : old);
+        state.active = poolMXBean.getActiveConnections();
+        state.awaiting = poolMXBean.getThreadsAwaitingConnection();
+        state.avgWaitMillis = 0;
+        state.rejected = 0;
+        state.timeouts = 0;
+        // 连接池等待优先取连接池自身的统计（不依赖隔离舱），没有时退回隔离舱记录的获取连接耗时
+        PoolAcquireMetrics metrics = pool.getMetricsTrackerFactory() instanceof PoolAcquireMetrics
+                ? (PoolAcquireMetrics) pool.getMetricsTrackerFactory() : null;
+        long waitNanos = 0;
+        long attempts = 0;
+        long rejected = 0;
+        long timeouts = 0;
+        if (metrics != null) {
+            waitNanos = metrics.getAcquiredNanos();
+            attempts = metrics.getAcquiredCount();
+            timeouts = metrics.getTimeoutCount();
+        } else if (guard != null) {
+            waitNanos = guard.getConnectionWaitNanos();
+            attempts = guard.getConnectionAcquiredCount();
+        }
+        if (guard != null) {
+            state.awaiting += guard.getBulkheadWaiting();
+            // 获取连接的总耗时 = 隔离舱等待 + 连接池等待，被拒绝的请求只有隔离舱等待
+            waitNanos += guard.getBulkheadWaitNanos();
+            rejected = guard.getBulkheadRejectedCount();
+            attempts += rejected;
+        }
+        if (metrics == null && guard == null) {
+            return state;
+        }
+        if (state.lastAttemptCount >= 0) {
+            state.rejected = rejected - state.lastRejectedCount;
+            state.timeouts = timeouts - state.lastTimeoutCount;
+            if (attempts > state.lastAttemptCount) {
+                state.avgWaitMillis = (waitNanos - state.lastWaitNanos) / 1e6 / (attempts - state.lastAttemptCount);
+            }
+        }
+        state.lastWaitNanos = waitNanos;
+        state.lastAttemptCount = attempts;
+        state.lastRejectedCount = rejected;
+        state.lastTimeoutCount = timeouts;
+        return state;
+    }
+
+    private void adjustInstance(String instance, List<PoolState> pools) {
+        int budget = budgetOf(instance);
+        int committed = 0;
+        List<PoolState> growing = new ArrayList<>();
+        for (PoolState state : pools) {
+            committed += state.pool.getHikariConfigMXBean().getMaximumPoolSize();
+        }
+        // 先缩容释放预算
+        for (PoolState state : pools) {
+            int current = state.pool.getHikariConfigMXBean().getMaximumPoolSize();
+            int desired = desiredSize(state, current);
+            if (desired < current) {
+                apply(state, current, desired, state.reason);
+                committed -= current - desired;
+            } else if (desired > current) {
+                state.desired = desired;
+                growing.add(state);
+            } else {
+                log.debug("连接池 {}({}) 保持 maximumPoolSize={}: {}", state.name, instance, current, state.reason);
+            }
+        }
+        // 压力大的优先分配剩余预算
+        growing.sort(Comparator.comparingLong((PoolState s) -> s.rejected + s.timeouts).thenComparingInt(s -> s.awaiting)
+                .thenComparingDouble(s -> s.avgWaitMillis).reversed());
+        for (PoolState state : growing) {
+            int current = state.pool.getHikariConfigMXBean().getMaximumPoolSize();
+            int allowed = (int) Math.min(state.desired, (long) current + Math.max(0, (long) budget - committed));
+            if (allowed <= current) {
+                record(state, current, current, state.reason + "，实例 " + instance + " 预算 " + budget + " 已用完");
+                log.info("连接池 {}({}) 需要扩容到 {}，实例预算 {} 已用完（已分配 {}）: {}",
+                        state.name, instance, state.desired, budget, committed, state.reason);
+                continue;
+            }
+            String reason = allowed < state.desired ? state.reason + "，受实例预算限制" : state.reason;
+            apply(state, current, allowed, reason);
+            committed += allowed - current;
+        }
+    }
+
+    /**
+     * 计算期望的 maximumPoolSize，同时在 state.reason 中记录依据
+     */
+    private int desiredSize(PoolState state, int current) {
+        int step = Math.max(1, current * stepPercent / 100);
+        int usagePercent = current <= 0 ? 100 : state.active * 100 / current;
+        int desired = current;
+        if (state.awaiting > 0 || state.rejected > 0 || state.timeouts > 0 || state.avgWaitMillis >= waitThresholdMs
+                || usagePercent >= highUsagePercent) {
+            state.calmIntervals = 0;
+            desired = current + Math.max(step, state.awaiting);
+            state.reason = String.format("等待线程 %d，隔离舱拒绝 %d，获取连接超时 %d，平均等待 %.1f ms，使用率 %d%%",
+                    state.awaiting, state.rejected, state.timeouts, state.avgWaitMillis, usagePercent);
+        } else if (usagePercent <= lowUsagePercent) {
+            state.calmIntervals++;
+            state.reason = String.format("使用率 %d%% 已持续 %d 个周期", usagePercent, state.calmIntervals);
+            if (state.calmIntervals >= shrinkAfterIntervals) {
+                state.calmIntervals = 0;
+                // 缩容后使用率仍不超过 high-usage-percent
+                int floor = (state.active * 100 + highUsagePercent - 1) / highUsagePercent;
+                desired = Math.max(floor, current - step);
+            }
+        } else {
+            state.calmIntervals = 0;
+            state.reason = String.format("使用率 %d%%", usagePercent);
+        }
+        int bounded = Math.max(minPoolSize, Math.min(maxPoolSize, desired));
+        if (bounded != desired) {
+            state.reason += "，限制在 [" + minPoolSize + ", " + maxPoolSize + "]";
+        }
+        return bounded;
+    }
+
+    private void apply(PoolState state, int current, int target, String reason) {
+        HikariConfigMXBean config = state.pool.getHikariConfigMXBean();
+        int currentMinIdle = config.getMinimumIdle();
+        int minIdle = Math.min(target, Math.max(1, target * minIdlePercent / 100));
+        try {
+            // 扩容先调上限，缩容先调最小空闲，保证任意时刻 minimumIdle <= maximumPoolSize
+            if (target >= current) {
+                config.setMaximumPoolSize(target);
+                config.setMinimumIdle(minIdle);
+            } else {
+                config.setMinimumIdle(minIdle);
+                config.setMaximumPoolSize(target);
+            }
+        } catch (RuntimeException e) {
+            log.warn("连接池 {} 调整失败: {}", state.name, e.getMessage());
+            return;
+        }
+        record(state, current, target, reason);
+        log.info("连接池 {}({}) maximumPoolSize {} -> {}，minimumIdle {} -> {}: {}",
+                state.name, state.instance, current, target, currentMinIdle, minIdle, reason);
+    }
+
+    private void record(PoolState state, int from, int to, String reason) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("time", System.currentTimeMillis());
+        decision.put("dataSource", state.name);
+        decision.put("instance", state.instance);
+        decision.put("from", from);
+        decision.put("to", to);
+        decision.put("reason", reason);
+        synchronized (decisions) {
+            if (decisions.size() >= MAX_DECISIONS) {
+                decisions.removeFirst();
+            }
+            decisions.addLast(decision);
+        }
+    }
+
+    private int budgetOf(String instance) {
+        int budget = instanceBudgets.getOrDefault(instance, defaultInstanceBudget);
+        return budget <= 0 ? Integer.MAX_VALUE : budget;
+    }
+
+    /**
+     * jdbc:mysql://host:port/db?... → host:port，未写端口时补 3306
+     */
+    static String instanceOf(String jdbcUrl) {
+        if (jdbcUrl == null) {
+            return "unknown";
+        }
+        int start = jdbcUrl.indexOf("://");
+        String rest = start < 0 ? jdbcUrl : jdbcUrl.substring(start + 3);
+        int end = rest.length();
+        for (char c : new char[]{'/', '?', ','}) {
+            int index = rest.indexOf(c);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        String hostPort = rest.substring(0, end).toLowerCase(Locale.ROOT);
+        return hostPort.contains(":") ? hostPort : hostPort + ":3306";
+    }
+
+    private static class PoolState {
+
+        private final String name;
+
+        private final HikariDataSource pool;
+
+        private final String instance;
+
+        private int active;
+
+        private int awaiting;
+
+        private double avgWaitMillis;
+
+        /**
+         * 本周期隔离舱拒绝的次数
+         */
+        private long rejected;
+
+        /**
+         * 本周期连接池获取连接超时的次数
+         */
+        private long timeouts;
+
+        private long lastWaitNanos;
+
+        /**
+         * 获取连接成功和被隔离舱拒绝的累计次数，小于 0 表示还没有上一周期的累计值
+         */
+        private long lastAttemptCount = -1;
+
+        private long lastRejectedCount;
+
+        private long lastTimeoutCount;
+
+        private int calmIntervals;
+
+        private int desired;
+
+        private String reason;
+
+        private PoolState(String name, HikariDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+            this.instance = instanceOf(pool.getJdbcUrl());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.lix.mycatdemo.sharding.pool;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * XXX 连接池自身的获取连接统计：Hikari 每次借出连接时回调 recordConnectionAcquiredNanos，获取超时时回调 recordConnectionTimeout
+ * 构建连接池时设置到 HikariConfig，每个连接池一个实例，AdaptivePoolSizer 通过 HikariDataSource.getMetricsTrackerFactory() 读取
+ * 不依赖 ShardGuardDataSource，未开启隔离舱时也能得到连接池等待时间
+ */
+public class PoolAcquireMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquiredNanos = new LongAdder();
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquiredNanos.add(elapsedAcquiredNanos);
+                acquiredCount.increment();
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.increment();
+            }
+        };
+    }
+
+    /**
+     * 成功借出连接的累计等待时间
+     */
+    public long getAcquiredNanos() {
+        return acquiredNanos.sum();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * 等待超过 connectionTimeout 仍未拿到连接的累计次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+}
@@ -0,0 +1,184 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * XXX 数据库访问的自适应并发限制（TCP Vegas 思路）
+ * 1. 记录一段时间内的最小耗时 minRtt 作为无排队时的基准
+ * 2. 估计排队量 queue = limit × (1 - minRtt / rtt)：queue 小于 alpha 时增大 limit，大于 beta 时减小 limit
+ *    alpha / beta 随 limit 对数增长，超时、连接获取失败等按过载处理，limit 乘以 backoff-ratio
+ * 3. 每 probe-interval 个样本重置 minRtt，避免基准长期停留在历史低点
+ * 4. 读请求只能使用 limit × (1 - write-reserve-percent%)，剩余名额留给写请求
+ * 超出限制的请求直接拒绝，不在连接池上排队
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    @Value("${order.concurrency-limit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.concurrency-limit.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${order.concurrency-limit.min-limit:4}")
+    private int minLimit;
+
+    @Value("${order.concurrency-limit.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${order.concurrency-limit.write-reserve-percent:20}")
+    private int writeReservePercent;
+
+    @Value("${order.concurrency-limit.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${order.concurrency-limit.probe-interval:1000}")
+    private int probeInterval;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    /**
+     * 以下字段在 onSample 中受 this 保护，limit 额外 volatile 供无锁读取
+     */
+    private volatile double limit;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samplesSinceProbe;
+
+    private final AtomicLong acceptedCount = new AtomicLong(0);
+    private final AtomicLong rejectedReadCount = new AtomicLong(0);
+    private final AtomicLong rejectedWriteCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        log.info("数据库自适应并发限制: enabled={}, 初始 limit={}, 范围 [{}, {}], 写请求预留 {}%",
+                enabled, limit, minLimit, maxLimit, writeReservePercent);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 申请一个并发名额
+     * @param write 是否写请求
+     * @return 获得名额时返回凭证，执行结束后必须调用 release；超出限制时返回 null
+     */
+    public Token tryAcquire(boolean write) {
+        int allowed = write
+                ? (int) limit
+                : Math.max(1, (int) (limit * (100 - writeReservePercent) / 100));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                (write ? rejectedWriteCount : rejectedReadCount).incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                acceptedCount.incrementAndGet();
+                return new Token(current + 1);
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("limit", (int) limit);
+        statistics.put("readLimit", Math.max(1, (int) (limit * (100 - writeReservePercent) / 100)));
+        statistics.put("inFlight", inFlight.get());
+        synchronized (this) {
+            statistics.put("minRttMicros", minRttNanos == Long.MAX_VALUE ? null : minRttNanos / 1000);
+        }
+        statistics.put("acceptedCount", acceptedCount.get());
+        statistics.put("rejectedReadCount", rejectedReadCount.get());
+        statistics.put("rejectedWriteCount", rejectedWriteCount.get());
+        statistics.put("droppedCount", droppedCount.get());
+        return statistics;
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        if (dropped) {
+            droppedCount.incrementAndGet();
+            limit = Math.max(minLimit, limit * backoffRatio);
+            return;
+        }
+        if (++samplesSinceProbe >= probeInterval) {
+            samplesSinceProbe = 0;
+            minRttNanos = rttNanos;
+        } else if (rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        }
+        double current = limit;
+        // 并发远低于限制时耗时不能反映限制是否合适，不调整
+        if (inFlightAtStart * 2 < current) {
+            return;
+        }
+        double queue = current * (1 - (double) minRttNanos / Math.max(rttNanos, 1));
+        double log = Math.max(1, Math.log10(current));
+        if (queue <= 3 * log) {
+            current += log;
+        } else if (queue >= 6 * log) {
+            current -= log;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, current));
+    }
+
+    /**
+     * 一次执行的并发名额
+     */
+    public final class Token {
+
+        private final int inFlightAtStart;
+
+        private final long startNanos = System.nanoTime();
+
+        private boolean released;
+
+        private Token(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * 执行成功，记录耗时
+         */
+        public void onSuccess() {
+            release(false, true);
+        }
+
+        /**
+         * 超时、连接获取失败等过载信号
+         */
+        public void onDropped() {
+            release(true, true);
+        }
+
+        /**
+         * 与负载无关的失败（如 SQL 错误），只归还名额
+         */
+        public void onIgnore() {
+            release(false, false);
+        }
+
+        private void release(boolean dropped, boolean sample) {
+            if (released) {
+                return;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            if (sample) {
+                onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.lix.mycatdemo.exception.BusinessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientException;
+
+/**
+ * XXX 在 Mapper 语句进入 Sharding-JDBC 之前做自适应并发限制
+ * 超出限制时抛出 BusinessException(503)，不再等待连接池
+ * 直接访问实际数据源的批量读写由 ShardGuardDataSource 的隔离舱限制
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class ConcurrencyLimitInterceptor implements Interceptor {
+
+    public static final int OVERLOADED_CODE = 503;
+
+    @Resource
+    private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!adaptiveConcurrencyLimiter.isEnabled()) {
+            return invocation.proceed();
+        }
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        boolean write = mappedStatement.getSqlCommandType() != SqlCommandType.SELECT;
+        AdaptiveConcurrencyLimiter.Token token = adaptiveConcurrencyLimiter.tryAcquire(write);
+        if (token == null) {
+            throw new BusinessException(OVERLOADED_CODE, "数据库繁忙，请稍后重试");
+        }
+        try {
+            Object result = invocation.proceed();
+            token.onSuccess();
+            return result;
+        } catch (Throwable t) {
+            if (isOverload(t)) {
+                token.onDropped();
+            } else {
+                token.onIgnore();
+            }
+            throw t;
+        }
+    }
+
+    /**
+     * 超时、连接获取失败、熔断/隔离舱拒绝都是瞬时异常；
+     * 死锁、锁等待超时回滚（SQLTransactionRollbackException）是行锁冲突，与并发数无关，不收缩 limit
+     */
+    static boolean isOverload(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransactionRollbackException) {
+                return false;
+            }
+            if (cause instanceof SQLTransientException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
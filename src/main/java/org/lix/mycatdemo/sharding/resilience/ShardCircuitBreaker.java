@@ -0,0 +1,157 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * XXX 单个实际数据源的熔断器
+ * CLOSED：记录最近 window-size 次调用，失败或慢调用占比达到阈值（且调用数不少于 minimum-calls）时打开
+ * OPEN：open-ms 内直接拒绝，之后进入 HALF_OPEN
+ * HALF_OPEN：只放行 half-open-calls 个连接，全部成功则关闭，任意一次失败重新打开
+ */
+public class ShardCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    /**
+     * 最近调用的结果，true 表示失败或慢调用，受 this 保护
+     */
+    private final boolean[] outcomes;
+    private int next;
+    private int count;
+    private int badCount;
+    private int halfOpenSuccess;
+
+    private volatile State state = State.CLOSED;
+    private volatile long stateChangedAt = System.currentTimeMillis();
+
+    private final AtomicInteger halfOpenPermits = new AtomicInteger(0);
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong openedCount = new AtomicLong(0);
+
+    public ShardCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openMillis, int halfOpenCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /**
+     * 是否允许新的连接
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (current == State.OPEN) {
+            if (now - stateChangedAt < openMillis) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            toHalfOpen(State.OPEN);
+        } else if (halfOpenPermits.get() <= 0 && now - stateChangedAt >= openMillis) {
+            // 试探连接没有带回任何结果（例如被隔离舱拒绝），重新发放试探名额
+            toHalfOpen(State.HALF_OPEN);
+        }
+        if (halfOpenPermits.getAndDecrement() > 0) {
+            return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 记录一次调用结果
+     * @param bad 失败或慢调用
+     */
+    public synchronized void record(boolean bad) {
+        if (state == State.HALF_OPEN) {
+            if (bad) {
+                open();
+            } else if (++halfOpenSuccess >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        if (count == windowSize) {
+            if (outcomes[next]) {
+                badCount--;
+            }
+        } else {
+            count++;
+        }
+        outcomes[next] = bad;
+        if (bad) {
+            badCount++;
+        }
+        next = (next + 1) % windowSize;
+        if (count >= minimumCalls && badCount * 100 >= failureRateThreshold * count) {
+            open();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * OPEN 状态下距离进入 HALF_OPEN 的剩余时间
+     */
+    public long getRemainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openMillis - (System.currentTimeMillis() - stateChangedAt)) : 0;
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("state", state);
+        statistics.put("stateChangedAt", stateChangedAt);
+        statistics.put("windowCalls", count);
+        statistics.put("failureRate", count == 0 ? 0 : badCount * 100 / count);
+        statistics.put("rejectedCount", rejectedCount.get());
+        statistics.put("openedCount", openedCount.get());
+        return statistics;
+    }
+
+    private synchronized void toHalfOpen(State expected) {
+        if (state != expected) {
+            return;
+        }
+        state = State.HALF_OPEN;
+        stateChangedAt = System.currentTimeMillis();
+        halfOpenSuccess = 0;
+        halfOpenPermits.set(halfOpenCalls);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        stateChangedAt = System.currentTimeMillis();
+        halfOpenPermits.set(0);
+        openedCount.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        stateChangedAt = System.currentTimeMillis();
+        next = 0;
+        count = 0;
+        badCount = 0;
+    }
+}
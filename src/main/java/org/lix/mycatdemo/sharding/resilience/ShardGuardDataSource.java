@@ -0,0 +1,224 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.lix.mycatdemo.sharding.datasource.ExecutionObservingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * XXX 实际数据源的隔离舱和熔断器
+ * 1. 隔离舱：同时持有的连接数不超过上限，等待超过 acquire-timeout-ms 直接失败，不在故障实例的连接池上长时间排队
+ * 2. 熔断器：获取连接和 execute* 的连接类异常、超时以及超过 slow-call-ms 的慢调用计为失败，
+ * 死锁、锁等待超时回滚（SQLTransactionRollbackException）是业务并发冲突，不计为失败；
+ * executeBatch 的耗时随批量大小增长，不按慢调用计算
+ * 熔断或隔离舱已满时抛出 ShardUnavailableException
+ */
+public class ShardGuardDataSource extends ExecutionObservingDataSource {
+
+    private final String name;
+
+    /**
+     * 隔离舱上限，每次获取连接时读取，跟随连接池大小变化
+     */
+    private final IntSupplier maxConcurrent;
+
+    private final long acquireTimeoutMillis;
+
+    private final long slowCallNanos;
+
+    private final ShardCircuitBreaker circuitBreaker;
+
+    private final AtomicInteger inUse = new AtomicInteger(0);
+
+    private final Object bulkheadMonitor = new Object();
+
+    private final AtomicLong bulkheadRejectedCount = new AtomicLong(0);
+
+    /**
+     * 在隔离舱中等待的累计时间和当前等待的线程数；开启隔离舱后连接池本身很少有线程排队，压力体现在这里
+     */
+    private final AtomicLong bulkheadWaitNanos = new AtomicLong(0);
+    private final AtomicInteger bulkheadWaiting = new AtomicInteger(0);
+
+    /**
+     * 从连接池获取连接的累计等待时间和次数（不含隔离舱等待）
+     */
+    private final AtomicLong connectionWaitNanos = new AtomicLong(0);
+    private final AtomicLong connectionAcquiredCount = new AtomicLong(0);
+
+    public ShardGuardDataSource(String name, DataSource targetDataSource, IntSupplier maxConcurrent,
+                                long acquireTimeoutMillis, long slowCallMillis, ShardCircuitBreaker circuitBreaker) {
+        super(targetDataSource);
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            long start = System.nanoTime();
+            Connection connection = super.getConnection();
+            connectionWaitNanos.addAndGet(System.nanoTime() - start);
+            connectionAcquiredCount.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            release();
+            circuitBreaker.record(isShardFailure(e));
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            long start = System.nanoTime();
+            Connection connection = super.getConnection(username, password);
+            connectionWaitNanos.addAndGet(System.nanoTime() - start);
+            connectionAcquiredCount.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            release();
+            circuitBreaker.record(isShardFailure(e));
+            throw e;
+        }
+    }
+
+    @Override
+    protected void beforeExecute() {
+    }
+
+    @Override
+    protected void afterExecute(long costNanos, Throwable error) {
+        circuitBreaker.record(error != null ? isShardFailure(error) : costNanos > slowCallNanos);
+    }
+
+    @Override
+    protected void afterExecute(String methodName, long costNanos, Throwable error) {
+        if (error == null && methodName.endsWith("Batch")) {
+            circuitBreaker.record(false);
+            return;
+        }
+        afterExecute(costNanos, error);
+    }
+
+    @Override
+    protected void onConnectionClosed() {
+        release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getConnectionWaitNanos() {
+        return connectionWaitNanos.get();
+    }
+
+    public long getConnectionAcquiredCount() {
+        return connectionAcquiredCount.get();
+    }
+
+    public long getBulkheadWaitNanos() {
+        return bulkheadWaitNanos.get();
+    }
+
+    public int getBulkheadWaiting() {
+        return bulkheadWaiting.get();
+    }
+
+    public long getBulkheadRejectedCount() {
+        return bulkheadRejectedCount.get();
+    }
+
+    public ShardCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>(circuitBreaker.getStatistics());
+        statistics.put("inUse", inUse.get());
+        statistics.put("maxConcurrent", maxConcurrent.getAsInt());
+        statistics.put("bulkheadWaiting", bulkheadWaiting.get());
+        statistics.put("bulkheadRejectedCount", bulkheadRejectedCount.get());
+        return statistics;
+    }
+
+    private void acquire() throws SQLException {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new ShardUnavailableException("实际数据源 " + name + " 已熔断，"
+                    + circuitBreaker.getRemainingOpenMillis() + " ms 后试探恢复");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        boolean waited = false;
+        try {
+            while (true) {
+                int current = inUse.get();
+                if (current < maxConcurrent.getAsInt()) {
+                    if (inUse.compareAndSet(current, current + 1)) {
+                        return;
+                    }
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    bulkheadRejectedCount.incrementAndGet();
+                    throw new ShardUnavailableException("实际数据源 " + name + " 并发连接数已达上限 "
+                            + maxConcurrent.getAsInt() + "，等待 " + acquireTimeoutMillis + " ms 后放弃");
+                }
+                if (!waited) {
+                    waited = true;
+                    bulkheadWaiting.incrementAndGet();
+                }
+                synchronized (bulkheadMonitor) {
+                    if (inUse.get() >= maxConcurrent.getAsInt()) {
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(bulkheadMonitor, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("等待实际数据源 " + name + " 的连接时被中断", e);
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (waited) {
+                bulkheadWaiting.decrementAndGet();
+                bulkheadWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void release() {
+        inUse.decrementAndGet();
+        synchronized (bulkheadMonitor) {
+            bulkheadMonitor.notify();
+        }
+    }
+
+    /**
+     * 只有连接类异常和超时说明实例有问题，语法错误、主键冲突、死锁回滚等不计入熔断
+     */
+    static boolean isShardFailure(Throwable error) {
+        if (!(error instanceof SQLException) || error instanceof SQLTransactionRollbackException) {
+            return false;
+        }
+        SQLException e = (SQLException) error;
+        String sqlState = e.getSQLState();
+        return e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException
+                || sqlState != null && sqlState.startsWith("08");
+    }
+}
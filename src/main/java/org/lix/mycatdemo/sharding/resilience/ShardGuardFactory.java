@@ -0,0 +1,91 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * 为刷新器构建的每个实际数据源创建 ShardGuardDataSource，并保留最新一组用于查看状态
+ */
+@Slf4j
+@Component
+public class ShardGuardFactory {
+
+    @Value("${order.shard-guard.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 隔离舱上限，不大于 0 时跟随 Hikari 的 maximumPoolSize
+     */
+    @Value("${order.shard-guard.max-concurrent:0}")
+    private int maxConcurrent;
+
+    @Value("${order.shard-guard.acquire-timeout-ms:100}")
+    private long acquireTimeoutMs;
+
+    @Value("${order.shard-guard.slow-call-ms:5000}")
+    private long slowCallMs;
+
+    @Value("${order.shard-guard.window-size:50}")
+    private int windowSize;
+
+    @Value("${order.shard-guard.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${order.shard-guard.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${order.shard-guard.open-ms:5000}")
+    private long openMs;
+
+    @Value("${order.shard-guard.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    /**
+     * 实际数据源名称 → 最近一次构建的包装
+     */
+    private final Map<String, ShardGuardDataSource> guards = new ConcurrentHashMap<>();
+
+    /**
+     * 包装实际数据源，未开启时原样返回
+     */
+    public DataSource wrap(String name, DataSource dataSource) {
+        if (!enabled) {
+            return dataSource;
+        }
+        ShardGuardDataSource guard = new ShardGuardDataSource(name, dataSource, limitOf(dataSource), acquireTimeoutMs, slowCallMs,
+                new ShardCircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openMs, halfOpenCalls));
+        guards.put(name, guard);
+        log.info("实际数据源 {} 已包装隔离舱和熔断器", name);
+        return guard;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new TreeMap<>();
+        guards.forEach((name, guard) -> statistics.put(name, guard.getStatistics()));
+        return statistics;
+    }
+
+    private IntSupplier limitOf(DataSource dataSource) {
+        if (maxConcurrent > 0) {
+            return () -> maxConcurrent;
+        }
+        DataSource target = dataSource;
+        while (target instanceof DelegatingDataSource) {
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        if (target instanceof HikariDataSource) {
+            HikariDataSource hikariDataSource = (HikariDataSource) target;
+            return () -> hikariDataSource.getHikariConfigMXBean().getMaximumPoolSize();
+        }
+        return () -> Integer.MAX_VALUE;
+    }
+}
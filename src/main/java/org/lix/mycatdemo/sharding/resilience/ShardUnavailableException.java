@@ -0,0 +1,15 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * 实际数据源熔断中或并发已满时快速失败
+ */
+public class ShardUnavailableException extends SQLTransientConnectionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ShardUnavailableException(String message) {
+        super(message, "08001");
+    }
+}
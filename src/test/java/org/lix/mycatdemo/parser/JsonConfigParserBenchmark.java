@@ -0,0 +1,56 @@
+package org.lix.mycatdemo.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XXX 约 1 万个 key 的 JSON 配置：JSONReader 流式扁平化 vs 先构建 JSONObject 再扁平化
+ * 运行：mvn test-compile 后执行本类 main 方法，-prof gc 可以同时看到每次解析的分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonConfigParserBenchmark {
+
+    /**
+     * 为空表示不过滤
+     */
+    @Param({"", "group1"})
+    private String prefix;
+
+    private String document;
+
+    private JsonConfigParser parser;
+
+    @Setup
+    public void setUp() {
+        document = LegacyJsonConfigFlattener.document(1000);
+        parser = new JsonConfigParser();
+    }
+
+    @Benchmark
+    public Map<String, Object> streaming() {
+        return parser.doParse(document, prefix);
+    }
+
+    @Benchmark
+    public Map<String, Object> jsonObject() {
+        return LegacyJsonConfigFlattener.parse(document, prefix);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JsonConfigParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,40 @@
+package org.lix.mycatdemo.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonConfigParserTest {
+
+    private final JsonConfigParser parser = new JsonConfigParser();
+
+    @Test
+    void flattensLikeTheJsonObjectImplementationOnLargeDocument() {
+        String document = LegacyJsonConfigFlattener.document(1000);
+        Map<String, Object> expected = LegacyJsonConfigFlattener.parse(document, null);
+        Map<String, Object> actual = parser.doParse(document);
+
+        assertEquals(11_000, expected.size());
+        assertEquals(expected, actual);
+        assertEquals("x12", actual.get("group12.nested.b.c"));
+        assertEquals("h2", actual.get("group12.hosts[2]"));
+        assertEquals(13, actual.get("group12.rules[1].k"));
+    }
+
+    @Test
+    void prefixFilterMatchesTheJsonObjectImplementation() {
+        String document = LegacyJsonConfigFlattener.document(1000);
+        for (String prefix : new String[]{"group1", "group12.hosts", "group999.rules[0]", "missing"}) {
+            assertEquals(LegacyJsonConfigFlattener.parse(document, prefix), parser.doParse(document, prefix), prefix);
+        }
+    }
+
+    @Test
+    void blankOrNonObjectContentIsEmpty() {
+        assertTrue(parser.doParse("").isEmpty());
+        assertTrue(parser.doParse("[1, 2]").isEmpty());
+        assertTrue(parser.doParse("{\"a\":{},\"b\":[]}").isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+package org.lix.mycatdemo.parser;
+
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.*;
+
+/**
+ * 流式解析之前基于 JSONObject 的扁平化实现，作为等价性测试和基准测试的对照
+ */
+final class LegacyJsonConfigFlattener {
+
+    private LegacyJsonConfigFlattener() {
+    }
+
+    static Map<String, Object> parse(String content, String prefix) {
+        Map<String, Object> result = new HashMap<>();
+        flatMap(JSONObject.parseObject(content), result, "");
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return result;
+        }
+        return result.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .collect(HashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue()), HashMap::putAll);
+    }
+
+    /**
+     * 生成约 keyGroups × 11 个 key 的配置文档，包含嵌套对象、标量数组和对象数组
+     */
+    static String document(int keyGroups) {
+        StringBuilder json = new StringBuilder(keyGroups * 200).append('{');
+        for (int i = 0; i < keyGroups; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"group").append(i).append("\":{")
+                    .append("\"name\":\"g").append(i).append("\",")
+                    .append("\"enabled\":").append(i % 2 == 0).append(',')
+                    .append("\"size\":").append(i).append(',')
+                    .append("\"ratio\":").append(i).append(".5,")
+                    .append("\"hosts\":[\"h0\",\"h1\",\"h2\"],")
+                    .append("\"nested\":{\"a\":").append(i).append(",\"b\":{\"c\":\"x").append(i).append("\"}},")
+                    .append("\"rules\":[{\"k\":").append(i).append("},{\"k\":").append(i + 1).append("}]")
+                    .append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatMap(Map<String, Object> dataMap, Map<String, Object> result, String prefix) {
+        if (dataMap == null || dataMap.isEmpty()) {
+            return;
+        }
+        dataMap.forEach((k, v) -> {
+            String fullKey = genFullKey(prefix, k);
+            if (v instanceof Map) {
+                flatMap((Map<String, Object>) v, result, fullKey);
+                return;
+            } else if (v instanceof Collection) {
+                int count = 0;
+                for (Object obj : (Collection<Object>) v) {
+                    String kk = "[" + (count++) + "]";
+                    flatMap(Collections.singletonMap(kk, obj), result, fullKey);
+                }
+                return;
+            }
+            result.put(fullKey, v);
+        });
+    }
+
+    private static String genFullKey(String prefix, String key) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return key;
+        }
+        return key.startsWith("[") ? prefix.concat(key) : prefix.concat(".").concat(key);
+    }
+}
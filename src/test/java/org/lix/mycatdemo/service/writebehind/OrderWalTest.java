@@ -0,0 +1,148 @@
+package org.lix.mycatdemo.service.writebehind;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lix.mycatdemo.dao.OrderDO;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderWalTest {
+
+    /**
+     * order(n, "1.00", "NEW") 编码后为 8 字节头 + 27 字节内容
+     */
+    private static final int NEW_RECORD_BYTES = 35;
+
+    /**
+     * 每段只能放下两条 NEW_RECORD_BYTES 大小的记录（末尾还要留 4 字节结束标记）
+     */
+    private static final int TWO_RECORD_SEGMENT_BYTES = 100;
+
+    @TempDir
+    Path dir;
+
+    private static OrderDO order(long orderId, String price, String status) {
+        OrderDO order = new OrderDO();
+        order.setOrderId(orderId);
+        order.setUserId(orderId * 10);
+        order.setPrice(price == null ? null : new BigDecimal(price));
+        order.setStatus(status);
+        return order;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<OrderDO> orders(List<OrderWal.Entry> entries) {
+        return entries.stream().map(OrderWal.Entry::getOrder).collect(Collectors.toList());
+    }
+
+    @Test
+    void recordsRoundTripIncludingNullAndMultiByteFields() throws IOException {
+        OrderWal wal = new OrderWal(dir, 4096, false);
+        OrderDO plain = order(1L, "12.50", "NEW");
+        OrderDO nullStatus = order(2L, "0.01", null);
+        OrderDO multiByteStatus = order(3L, null, "已支付✓");
+        wal.append(plain);
+        wal.append(nullStatus);
+        wal.append(multiByteStatus);
+        wal.close();
+
+        List<OrderDO> recovered = orders(new OrderWal(dir, 4096, false).recover());
+        assertEquals(3, recovered.size());
+        assertEquals(plain, recovered.get(0));
+        assertEquals(nullStatus, recovered.get(1));
+        assertNull(recovered.get(1).getStatus());
+        assertEquals(multiByteStatus, recovered.get(2));
+        assertNull(recovered.get(2).getPrice());
+    }
+
+    @Test
+    void recoveryStopsAtCorruptedChecksum() throws IOException {
+        OrderWal wal = new OrderWal(dir, 4096, false);
+        wal.append(order(1L, "1.00", "NEW"));
+        wal.append(order(2L, "1.00", "NEW"));
+        wal.append(order(3L, "1.00", "NEW"));
+        wal.close();
+
+        // 翻转第二条记录 CRC 的一个字节，第三条记录本身完好也不再读取
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(NEW_RECORD_BYTES + 4);
+            int b = file.read();
+            file.seek(NEW_RECORD_BYTES + 4);
+            file.write(b ^ 0xFF);
+        }
+
+        List<OrderDO> recovered = orders(new OrderWal(dir, 4096, false).recover());
+        assertEquals(1, recovered.size());
+        assertEquals(1L, recovered.get(0).getOrderId());
+    }
+
+    @Test
+    void segmentIsDeletedOnlyAfterSealedAndFullyReleased() throws IOException {
+        OrderWal wal = new OrderWal(dir, TWO_RECORD_SEGMENT_BYTES, false);
+        OrderWal.Entry first = wal.append(order(1L, "1.00", "NEW"));
+        OrderWal.Entry second = wal.append(order(2L, "1.00", "NEW"));
+        Path firstSegment = segments().get(0);
+
+        // 未封存：全部落库也保留
+        wal.release(first);
+        wal.release(second);
+        assertTrue(Files.exists(firstSegment));
+
+        // 写满后切换新段，封存时已没有未落库的记录，随即删除
+        OrderWal.Entry third = wal.append(order(3L, "1.00", "NEW"));
+        OrderWal.Entry fourth = wal.append(order(4L, "1.00", "NEW"));
+        assertFalse(Files.exists(firstSegment));
+        Path secondSegment = segments().get(0);
+
+        // 封存时还有未落库的记录：最后一条落库后才删除
+        wal.append(order(5L, "1.00", "NEW"));
+        assertEquals(2, segments().size());
+        wal.release(third);
+        assertTrue(Files.exists(secondSegment));
+        wal.release(fourth);
+        assertFalse(Files.exists(secondSegment));
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    void appendAfterRecoverUsesNewSegment() throws IOException {
+        OrderWal wal = new OrderWal(dir, 4096, false);
+        wal.append(order(1L, "1.00", "NEW"));
+        wal.close();
+        Path recoveredSegment = segments().get(0);
+        long recoveredBytes = Files.size(recoveredSegment);
+
+        OrderWal reopened = new OrderWal(dir, 4096, false);
+        List<OrderWal.Entry> recovered = reopened.recover();
+        assertEquals(1, recovered.size());
+        reopened.append(order(2L, "1.00", "NEW"));
+
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        assertEquals(recoveredSegment, segments.get(0));
+        assertEquals(recoveredBytes, Files.size(recoveredSegment));
+
+        // 恢复出的段已封存，落库后删除；新记录只在新段中
+        reopened.release(recovered.get(0));
+        assertFalse(Files.exists(recoveredSegment));
+        reopened.close();
+        List<OrderDO> remaining = orders(new OrderWal(dir, 4096, false).recover());
+        assertEquals(1, remaining.size());
+        assertEquals(2L, remaining.get(0).getOrderId());
+    }
+}
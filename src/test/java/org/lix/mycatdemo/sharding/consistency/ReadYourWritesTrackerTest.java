@@ -0,0 +1,88 @@
+package org.lix.mycatdemo.sharding.consistency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadYourWritesTrackerTest {
+
+    private ReadYourWritesTracker tracker;
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private ReadYourWritesTracker newTracker(boolean enabled, long windowMs, int stripes) {
+        tracker = new ReadYourWritesTracker();
+        ReflectionTestUtils.setField(tracker, "enabled", enabled);
+        ReflectionTestUtils.setField(tracker, "windowMs", windowMs);
+        ReflectionTestUtils.setField(tracker, "stripes", stripes);
+        ReflectionTestUtils.setField(tracker, "clock", (LongSupplier) now::get);
+        tracker.init();
+        return tracker;
+    }
+
+    @AfterEach
+    void clearSession() {
+        if (tracker != null) {
+            tracker.clearSessionUser();
+        }
+    }
+
+    @Test
+    void stripesAreRoundedUpToPowerOfTwo() {
+        assertEquals(1024, newTracker(true, 1000, 1000).getStatistics().get("stripes"));
+        assertEquals(4096, newTracker(true, 1000, 4096).getStatistics().get("stripes"));
+    }
+
+    @Test
+    void disabledTrackerNeverPins() {
+        newTracker(false, 60_000, 16);
+        tracker.markWrite(1L);
+        assertFalse(tracker.isPinned(1L));
+        assertEquals(0L, tracker.getStatistics().get("writeCount"));
+    }
+
+    @Test
+    void writePinsTheUserUntilTheWindowExpires() {
+        newTracker(true, 100, 16);
+        assertFalse(tracker.isPinned(42L));
+        tracker.markWrite(42L);
+        assertTrue(tracker.isPinned(42L));
+        assertEquals(1L, tracker.getStatistics().get("pinnedReadCount"));
+
+        now.addAndGet(99);
+        assertTrue(tracker.isPinned(42L));
+        now.addAndGet(1);
+        assertFalse(tracker.isPinned(42L));
+    }
+
+    @Test
+    void laterWriteExtendsButEarlierWriteNeverShortensTheWindow() {
+        newTracker(true, 100, 16);
+        tracker.markWrite(42L);
+        now.addAndGet(60);
+        tracker.markWrite(42L);
+        now.addAndGet(60);
+        assertTrue(tracker.isPinned(42L));
+        now.addAndGet(40);
+        assertFalse(tracker.isPinned(42L));
+    }
+
+    @Test
+    void sessionUserIsUsedWhenNoUserIsGiven() {
+        newTracker(true, 60_000, 16);
+        assertFalse(tracker.isPinned(null));
+
+        tracker.bindSessionUser(7L);
+        tracker.markSessionWrite();
+        assertTrue(tracker.isPinned(null));
+        assertTrue(tracker.isPinned(7L));
+
+        tracker.clearSessionUser();
+        assertFalse(tracker.isPinned(null));
+    }
+}
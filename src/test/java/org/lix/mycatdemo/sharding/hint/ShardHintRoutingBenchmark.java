@@ -0,0 +1,137 @@
+package org.lix.mycatdemo.sharding.hint;
+
+import org.apache.shardingsphere.api.config.sharding.ShardingRuleConfiguration;
+import org.apache.shardingsphere.api.config.sharding.TableRuleConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.ComplexShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.config.sharding.strategy.HintShardingStrategyConfiguration;
+import org.apache.shardingsphere.api.hint.HintManager;
+import org.apache.shardingsphere.core.rule.ShardingRule;
+import org.apache.shardingsphere.sharding.route.engine.ShardingRouteDecorator;
+import org.apache.shardingsphere.sql.parser.SQLParserEngineFactory;
+import org.apache.shardingsphere.sql.parser.binder.metadata.column.ColumnMetaData;
+import org.apache.shardingsphere.sql.parser.binder.metadata.schema.SchemaMetaData;
+import org.apache.shardingsphere.sql.parser.binder.metadata.table.TableMetaData;
+import org.apache.shardingsphere.underlying.common.config.DatabaseAccessConfiguration;
+import org.apache.shardingsphere.underlying.common.config.properties.ConfigurationProperties;
+import org.apache.shardingsphere.underlying.common.database.type.DatabaseTypes;
+import org.apache.shardingsphere.underlying.common.metadata.ShardingSphereMetaData;
+import org.apache.shardingsphere.underlying.common.metadata.datasource.DataSourceMetas;
+import org.apache.shardingsphere.underlying.route.DataNodeRouter;
+import org.apache.shardingsphere.underlying.route.context.RouteContext;
+import org.lix.mycatdemo.sharding.ShardGene;
+import org.lix.mycatdemo.sharding.algorithm.ShardGeneDatabaseShardingAlgorithm;
+import org.lix.mycatdemo.sharding.algorithm.ShardGeneHintDatabaseShardingAlgorithm;
+import org.lix.mycatdemo.sharding.algorithm.ShardGeneHintTableShardingAlgorithm;
+import org.lix.mycatdemo.sharding.algorithm.ShardGeneTableShardingAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XXX selectByOrderIds 的路由耗时：t_order 从 IN 条件提取 order_id 走复合分片 vs t_order_by_gene 由 @ShardHint 给出路由值走 hint 分片
+ * 与 application-dev.yaml 相同的两库两表规则，只执行解析 + 路由，不连接数据库；SQL 解析结果有缓存，与线上一致
+ * hint 路径包含 ShardHintInterceptor 打开、填充、关闭 HintManager 的开销
+ * 运行：mvn test-compile 后执行本类 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardHintRoutingBenchmark {
+
+    private static final String COLUMNS = "select order_id, price, user_id, status from ";
+
+    /**
+     * IN 列表中的 order_id 个数，同一个用户的订单基因相同
+     */
+    @Param({"1", "16", "128"})
+    private int orderIdCount;
+
+    /**
+     * 是否都属于同一个用户：否时 order_id 的基因各不相同，路由到多张实际表
+     */
+    @Param({"true", "false"})
+    private boolean sameUser;
+
+    private DataNodeRouter router;
+
+    private List<Object> orderIds;
+
+    private String routedSql;
+
+    private String hintedSql;
+
+    @Setup
+    public void setUp() {
+        ShardingRuleConfiguration ruleConfig = new ShardingRuleConfiguration();
+        TableRuleConfiguration routed = new TableRuleConfiguration("t_order", "ds${1..2}.t_order_${1..2}");
+        routed.setDatabaseShardingStrategyConfig(new ComplexShardingStrategyConfiguration("user_id,order_id", new ShardGeneDatabaseShardingAlgorithm()));
+        routed.setTableShardingStrategyConfig(new ComplexShardingStrategyConfiguration("user_id,order_id", new ShardGeneTableShardingAlgorithm()));
+        TableRuleConfiguration hinted = new TableRuleConfiguration("t_order_by_gene", "ds${1..2}.t_order_${1..2}");
+        hinted.setDatabaseShardingStrategyConfig(new HintShardingStrategyConfiguration(new ShardGeneHintDatabaseShardingAlgorithm()));
+        hinted.setTableShardingStrategyConfig(new HintShardingStrategyConfiguration(new ShardGeneHintTableShardingAlgorithm()));
+        ruleConfig.getTableRuleConfigs().add(routed);
+        ruleConfig.getTableRuleConfigs().add(hinted);
+        List<String> dataSourceNames = Arrays.asList("ds1", "ds2");
+        ShardingRule shardingRule = new ShardingRule(ruleConfig, dataSourceNames);
+
+        Map<String, DatabaseAccessConfiguration> accessConfigs = new LinkedHashMap<>();
+        for (String name : dataSourceNames) {
+            accessConfigs.put(name, new DatabaseAccessConfiguration("jdbc:mysql://localhost:3306/" + name, "root", ""));
+        }
+        TableMetaData tableMetaData = new TableMetaData(Arrays.asList(
+                new ColumnMetaData("order_id", Types.BIGINT, "BIGINT", true, false, false),
+                new ColumnMetaData("price", Types.DECIMAL, "DECIMAL", false, false, false),
+                new ColumnMetaData("user_id", Types.BIGINT, "BIGINT", false, false, false),
+                new ColumnMetaData("status", Types.VARCHAR, "VARCHAR", false, false, false)), Collections.emptyList());
+        Map<String, TableMetaData> tables = new HashMap<>();
+        tables.put("t_order", tableMetaData);
+        tables.put("t_order_by_gene", tableMetaData);
+        ShardingSphereMetaData metaData = new ShardingSphereMetaData(
+                new DataSourceMetas(DatabaseTypes.getActualDatabaseType("MySQL"), accessConfigs), new SchemaMetaData(tables));
+
+        router = new DataNodeRouter(metaData, new ConfigurationProperties(new Properties()), SQLParserEngineFactory.getSQLParserEngine("MySQL"));
+        router.registerDecorator(shardingRule, new ShardingRouteDecorator());
+
+        orderIds = new ArrayList<>(orderIdCount);
+        for (int i = 0; i < orderIdCount; i++) {
+            long gene = sameUser ? 5 : i;
+            orderIds.add(((1000L + i) << ShardGene.GENE_BITS) | (gene & ((1L << ShardGene.GENE_BITS) - 1)));
+        }
+        StringJoiner placeholders = new StringJoiner(",", "(", ")");
+        orderIds.forEach(id -> placeholders.add("?"));
+        routedSql = COLUMNS + "t_order where order_id in " + placeholders;
+        hintedSql = COLUMNS + "t_order_by_gene where order_id in " + placeholders;
+    }
+
+    @Benchmark
+    public RouteContext conditionRouted() {
+        return router.route(routedSql, orderIds, true);
+    }
+
+    @Benchmark
+    public RouteContext hintRouted() {
+        try (HintManager hintManager = HintManager.getInstance()) {
+            for (Object orderId : orderIds) {
+                hintManager.addDatabaseShardingValue("t_order_by_gene", (Comparable<?>) orderId);
+                hintManager.addTableShardingValue("t_order_by_gene", (Comparable<?>) orderId);
+            }
+            return router.route(hintedSql, orderIds, true);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ShardHintRoutingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,79 @@
+package org.lix.mycatdemo.sharding.loadbalance;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgedReadExecutorTest {
+
+    @Test
+    void budgetAccruesPerQueryAndIsCappedAtBurst() {
+        HedgedReadExecutor.HedgeBudget budget = new HedgedReadExecutor.HedgeBudget(5, 2);
+        // 每次查询 0.05 个令牌，19 次查询还不够一次对冲
+        for (int i = 0; i < 19; i++) {
+            budget.add();
+        }
+        assertFalse(budget.tryAcquire());
+        budget.add();
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+
+        for (int i = 0; i < 1000; i++) {
+            budget.add();
+        }
+        assertEquals(2.0, budget.available(), 1e-9);
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test
+    void refundRestoresTokenWithoutExceedingBurst() {
+        HedgedReadExecutor.HedgeBudget budget = new HedgedReadExecutor.HedgeBudget(100, 1);
+        budget.add();
+        assertTrue(budget.tryAcquire());
+        budget.refund();
+        assertEquals(1.0, budget.available(), 1e-9);
+        budget.refund();
+        assertEquals(1.0, budget.available(), 1e-9);
+    }
+
+    @Test
+    void windowUsesInitialDelayUntilEnoughSamples() {
+        HedgedReadExecutor.LatencyWindow window = new HedgedReadExecutor.LatencyWindow(100);
+        for (int i = 0; i < 19; i++) {
+            window.record(10);
+        }
+        assertEquals(50, window.hedgeDelayMillis(50, 2));
+        window.record(10);
+        assertEquals(10, window.hedgeDelayMillis(50, 2));
+    }
+
+    @Test
+    void windowReportsP95AndRespectsMinDelay() {
+        HedgedReadExecutor.LatencyWindow window = new HedgedReadExecutor.LatencyWindow(20);
+        for (int i = 1; i <= 20; i++) {
+            window.record(i);
+        }
+        assertEquals(19, window.hedgeDelayMillis(50, 2));
+
+        HedgedReadExecutor.LatencyWindow fast = new HedgedReadExecutor.LatencyWindow(20);
+        for (int i = 0; i < 20; i++) {
+            fast.record(0);
+        }
+        assertEquals(2, fast.hedgeDelayMillis(50, 2));
+    }
+
+    @Test
+    void censoredSamplesCountTowardsP95() {
+        HedgedReadExecutor.LatencyWindow window = new HedgedReadExecutor.LatencyWindow(20);
+        for (int i = 0; i < 18; i++) {
+            window.record(5);
+        }
+        // 两次被取消的慢查询：只知道至少执行了 200 ms
+        window.recordCensored(200);
+        window.recordCensored(200);
+        assertEquals(2, window.getCensoredCount());
+        assertEquals(200, window.hedgeDelayMillis(50, 2));
+    }
+}
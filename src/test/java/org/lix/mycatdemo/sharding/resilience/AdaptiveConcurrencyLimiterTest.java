@@ -0,0 +1,95 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MIN_RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static AdaptiveConcurrencyLimiter newLimiter() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 20);
+        ReflectionTestUtils.setField(limiter, "minLimit", 4);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 200);
+        ReflectionTestUtils.setField(limiter, "writeReservePercent", 20);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(limiter, "probeInterval", 1000);
+        limiter.init();
+        return limiter;
+    }
+
+    private static int limitOf(AdaptiveConcurrencyLimiter limiter) {
+        return (int) limiter.getStatistics().get("limit");
+    }
+
+    @Test
+    void increasesWhenThereIsNoQueueing() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        limiter.onSample(MIN_RTT, 20, false);
+        assertEquals(21, limitOf(limiter));
+        limiter.onSample(MIN_RTT, 21, false);
+        assertEquals(22, limitOf(limiter));
+    }
+
+    @Test
+    void decreasesWhenLatencyShowsQueueing() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        limiter.onSample(MIN_RTT, 20, false);
+        assertEquals(21, limitOf(limiter));
+        // rtt 为 minRtt 的 10 倍，排队量约 0.9 × limit，远超 beta
+        limiter.onSample(MIN_RTT * 10, 21, false);
+        assertEquals(19, limitOf(limiter));
+    }
+
+    @Test
+    void backsOffOnDropAndStopsAtMinLimit() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        limiter.onSample(MIN_RTT, 20, true);
+        assertEquals(18, limitOf(limiter));
+        assertEquals(1L, limiter.getStatistics().get("droppedCount"));
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(MIN_RTT, 20, true);
+        }
+        assertEquals(4, limitOf(limiter));
+    }
+
+    @Test
+    void ignoresSamplesWhileApplicationLimited() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        limiter.onSample(MIN_RTT, 5, false);
+        limiter.onSample(MIN_RTT * 10, 5, false);
+        assertEquals(20, limitOf(limiter));
+    }
+
+    @Test
+    void reservesPartOfTheLimitForWrites() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        List<AdaptiveConcurrencyLimiter.Token> tokens = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            tokens.add(limiter.tryAcquire(false));
+        }
+        assertTrue(tokens.stream().allMatch(token -> token != null));
+        assertNull(limiter.tryAcquire(false));
+
+        for (int i = 0; i < 4; i++) {
+            AdaptiveConcurrencyLimiter.Token token = limiter.tryAcquire(true);
+            assertNotNull(token);
+            tokens.add(token);
+        }
+        assertNull(limiter.tryAcquire(true));
+        assertEquals(1L, limiter.getStatistics().get("rejectedReadCount"));
+        assertEquals(1L, limiter.getStatistics().get("rejectedWriteCount"));
+
+        tokens.forEach(AdaptiveConcurrencyLimiter.Token::onIgnore);
+        assertEquals(0, limiter.getStatistics().get("inFlight"));
+        assertEquals(20, limitOf(limiter));
+    }
+}
@@ -0,0 +1,27 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitInterceptorTest {
+
+    @Test
+    void transientErrorsInTheCauseChainAreOverload() {
+        assertTrue(ConcurrencyLimitInterceptor.isOverload(new SQLTimeoutException("query timeout")));
+        assertTrue(ConcurrencyLimitInterceptor.isOverload(
+                new PersistenceException(new ShardUnavailableException("bulkhead full"))));
+    }
+
+    @Test
+    void rollbacksAndSqlErrorsAreNotOverload() {
+        assertFalse(ConcurrencyLimitInterceptor.isOverload(
+                new PersistenceException(new SQLTransactionRollbackException("deadlock", "40001", 1213))));
+        assertFalse(ConcurrencyLimitInterceptor.isOverload(new SQLSyntaxErrorException("syntax", "42000")));
+    }
+}
@@ -0,0 +1,79 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardCircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker(10, 4, 50, 60_000, 2);
+        breaker.record(true);
+        breaker.record(true);
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker(10, 4, 50, 60_000, 2);
+        breaker.record(false);
+        breaker.record(false);
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.getRemainingOpenMillis() > 0);
+        assertEquals(1L, breaker.getStatistics().get("rejectedCount"));
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker(4, 4, 50, 60_000, 2);
+        breaker.record(true);
+        breaker.record(false);
+        breaker.record(false);
+        breaker.record(false);
+        // 挤出第一个失败，窗口内仍只有 1 次失败
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulProbes() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker(10, 2, 50, 0, 2);
+        breaker.record(true);
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.getState());
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(ShardCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.record(false);
+        assertEquals(ShardCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.record(false);
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getStatistics().get("windowCalls"));
+    }
+
+    @Test
+    void halfOpenReopensOnFailure() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker(10, 2, 50, 0, 2);
+        breaker.record(true);
+        breaker.record(true);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(ShardCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2L, breaker.getStatistics().get("openedCount"));
+    }
+}
@@ -0,0 +1,26 @@
+package org.lix.mycatdemo.sharding.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardGuardDataSourceTest {
+
+    @Test
+    void connectionErrorsAndTimeoutsAreShardFailures() {
+        assertTrue(ShardGuardDataSource.isShardFailure(new SQLTransientConnectionException("pool timeout")));
+        assertTrue(ShardGuardDataSource.isShardFailure(new SQLTimeoutException("query timeout")));
+        assertTrue(ShardGuardDataSource.isShardFailure(new SQLNonTransientConnectionException("refused")));
+        assertTrue(ShardGuardDataSource.isShardFailure(new SQLException("communications link failure", "08S01")));
+    }
+
+    @Test
+    void businessErrorsAreNotShardFailures() {
+        assertFalse(ShardGuardDataSource.isShardFailure(new SQLTransactionRollbackException("deadlock", "40001", 1213)));
+        assertFalse(ShardGuardDataSource.isShardFailure(new SQLIntegrityConstraintViolationException("duplicate", "23000")));
+        assertFalse(ShardGuardDataSource.isShardFailure(new SQLSyntaxErrorException("syntax", "42000")));
+        assertFalse(ShardGuardDataSource.isShardFailure(new IllegalStateException("not a SQLException")));
+    }
+}